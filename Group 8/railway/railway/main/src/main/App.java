@@ -4,7 +4,13 @@ import controller.BookingController;
 import controller.TrainController;
 import controller.UserController;
 import model.User;
+import util.Compactor;
 import util.FileUtil;
+import util.InputValidator;
+import util.SurgeGate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -20,6 +26,7 @@ public class App {
     public static void main(String[] args) {
         // Initialize data files
         FileUtil.initializeFiles();
+        Compactor.getInstance().start();
         
         System.out.println("========================================");
         System.out.println("  RAILWAY TICKET BOOKING SYSTEM");
@@ -153,7 +160,9 @@ public class App {
             System.out.println("3. Delete Train");
             System.out.println("4. View All Trains");
             System.out.println("5. View All Bookings");
-            System.out.println("6. Logout");
+            System.out.println("6. Storage Statistics");
+            System.out.println("7. Tatkal Surge Mode");
+            System.out.println("8. Logout");
             System.out.println("==================");
             
             int choice = getIntInput("Enter your choice: ");
@@ -175,6 +184,12 @@ public class App {
                     viewAllBookings();
                     break;
                 case 6:
+                    Compactor.getInstance().displayStats();
+                    break;
+                case 7:
+                    surgeMode();
+                    break;
+                case 8:
                     loggedIn = false;
                     System.out.println("Logged out successfully!");
                     break;
@@ -186,12 +201,23 @@ public class App {
 
     private static void searchTrains() {
         System.out.println("\n--- Search Trains ---");
-        System.out.print("Enter Source: ");
-        String source = scanner.nextLine();
-        System.out.print("Enter Destination: ");
-        String destination = scanner.nextLine();
+        String source = readStation("Enter Source: ");
+        String destination = readStation("Enter Destination: ");
+        System.out.print("Enter Journey Date (YYYY-MM-DD): ");
+        String journeyDate = scanner.nextLine();
+        System.out.print("Enter Departure Window (e.g. 06:00-10:00 or after 18:00, blank for any): ");
+        String departureWindow = scanner.nextLine();
         
-        trainController.searchTrains(source, destination);
+        trainController.searchTrains(source, destination, journeyDate, departureWindow);
+    }
+
+    private static String readStation(String prompt) {
+        String station = null;
+        while (station == null) {
+            System.out.print(prompt);
+            station = trainController.resolveStation(scanner.nextLine());
+        }
+        return station;
     }
 
     private static void bookTicket(User user) {
@@ -201,13 +227,27 @@ public class App {
         int seats = getIntInput("Enter Number of Seats: ");
         System.out.print("Enter Class (1A/2A/3A/SL): ");
         String ticketClass = scanner.nextLine();
+        System.out.print("Enter Journey Date (YYYY-MM-DD): ");
+        String journeyDate = scanner.nextLine();
+        System.out.print("Enter Boarding Station (blank for the train's source): ");
+        String fromStation = scanner.nextLine();
+        System.out.print("Enter Destination Station (blank for the train's destination): ");
+        String toStation = scanner.nextLine();
         
-        bookingController.bookTicket(user.getUserId(), trainNumber, seats, ticketClass);
+        bookingController.bookTicket(user.getUserId(), trainNumber, seats, ticketClass, journeyDate,
+                                     fromStation, toStation);
     }
 
     private static void viewMyBookings(User user) {
         System.out.println("\n--- My Bookings ---");
-        bookingController.viewUserBookings(user.getUserId());
+        int page = 0;
+        while (bookingController.viewUserBookings(user.getUserId(), page)) {
+            System.out.print("Show next page? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                break;
+            }
+            page++;
+        }
     }
 
     private static void cancelTicket(User user) {
@@ -230,8 +270,21 @@ public class App {
         String departureTime = scanner.nextLine();
         int totalSeats = getIntInput("Enter Total Seats: ");
         double fare = getDoubleInput("Enter Base Fare: ");
+        System.out.print("Enter Intermediate Stops (in order, separated by ';', blank for none): ");
+        String stops = scanner.nextLine().trim();
+        List<String> intermediateStops = stops.isEmpty() ? 
+                new ArrayList<>() : Arrays.asList(stops.split(";"));
+        System.out.print("Enter Running Minutes to each later stop (separated by ';', blank to estimate): ");
+        String minutes = scanner.nextLine().trim();
+        List<Integer> runningMinutes = minutes.isEmpty() ? 
+                new ArrayList<>() : InputValidator.parseMinutes(minutes);
+        if (runningMinutes == null) {
+            System.out.println("Running minutes must be whole numbers separated by ';'.");
+            return;
+        }
         
-        trainController.addTrain(trainNumber, source, destination, departureTime, totalSeats, fare);
+        trainController.addTrain(trainNumber, source, destination, departureTime, totalSeats, fare,
+                                 intermediateStops, runningMinutes);
     }
 
     private static void updateTrain() {
@@ -259,6 +312,19 @@ public class App {
         trainController.viewAllTrains();
     }
 
+    private static void surgeMode() {
+        System.out.println("\n--- Tatkal Surge Mode ---");
+        SurgeGate.getInstance().displayStats();
+        System.out.print("Enter Train Number to switch (blank to go back): ");
+        String trainNumber = scanner.nextLine().trim();
+        if (trainNumber.isEmpty()) {
+            return;
+        }
+        boolean on = !SurgeGate.getInstance().isSurgeMode(trainNumber);
+        SurgeGate.getInstance().setSurgeMode(trainNumber, on);
+        System.out.println("Surge mode " + (on ? "on" : "off") + " for train " + trainNumber + ".");
+    }
+
     private static void viewAllBookings() {
         System.out.println("\n--- All Bookings ---");
         bookingController.viewAllBookings();
@@ -1,28 +1,137 @@
 package controller;
 
+import model.BookingRequest;
+import model.BookingResult;
+import model.PendingBooking;
 import model.Ticket;
 import service.BookingService;
+import util.SurgeGate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * BookingController handles booking-related requests
  */
 public class BookingController {
+    public static final int BOOKINGS_PAGE_SIZE = 10;
+    
     private BookingService bookingService;
+    private SurgeGate surgeGate;
     
     public BookingController() {
-        this.bookingService = new BookingService();
+        this(new BookingService());
+    }
+    
+    /**
+     * Create a controller whose asynchronous calls run on an executor of the caller's choice
+     */
+    public BookingController(Executor executor) {
+        this(new BookingService(executor));
+    }
+    
+    private BookingController(BookingService bookingService) {
+        this.bookingService = bookingService;
+        this.surgeGate = SurgeGate.getInstance();
     }
     
     /**
-     * Book a ticket
+     * Book a ticket for a journey date
      */
-    public boolean bookTicket(String userId, String trainNumber, int seats, String ticketClass) {
+    public boolean bookTicket(String userId, String trainNumber, int seats, String ticketClass,
+                              String journeyDate) {
+        return bookTicket(userId, trainNumber, seats, ticketClass, journeyDate, null, null);
+    }
+    
+    /**
+     * Book a ticket for a journey date between two stops of the train
+     * In surge mode the place in line is shown as soon as the request is queued
+     */
+    public boolean bookTicket(String userId, String trainNumber, int seats, String ticketClass,
+                              String journeyDate, String fromStation, String toStation) {
+        PendingBooking pending = submitBooking(userId, trainNumber, seats, ticketClass, journeyDate,
+                                               fromStation, toStation);
+        if (pending.isQueued()) {
+            System.out.println("Queued at position " + pending.getQueuePosition() + 
+                               " for train " + trainNumber + ". Please wait...");
+        }
+        return bookingService.displayBookingResult(pending.getResult().join());
+    }
+    
+    /**
+     * Book a ticket without blocking the caller (errors end as failed results)
+     * See submitBooking for the place in a surge mode line
+     */
+    public CompletableFuture<BookingResult> bookTicketAsync(String userId, String trainNumber, int seats,
+                                                            String ticketClass, String journeyDate,
+                                                            String fromStation, String toStation) {
+        return submitBooking(userId, trainNumber, seats, ticketClass, journeyDate,
+                             fromStation, toStation).getResult();
+    }
+    
+    /**
+     * Submit a booking without blocking the caller (errors end as failed results)
+     * In surge mode the request joins the train's line at once and the handle gives
+     * its place straight away; it waits its turn on the booking executor.
+     * The result also carries the place (see BookingResult.getQueuePosition)
+     */
+    public PendingBooking submitBooking(String userId, String trainNumber, int seats,
+                                        String ticketClass, String journeyDate,
+                                        String fromStation, String toStation) {
+        if (!surgeGate.isSurgeMode(trainNumber)) {
+            return new PendingBooking(0, bookingService.bookTicketAsync(userId, trainNumber, seats, ticketClass,
+                                                                        journeyDate, fromStation, toStation)
+                    .exceptionally(e -> failure("Booking error: ", e)));
+        }
+        SurgeGate.Admission admission = surgeGate.join(trainNumber);
+        if (admission == null) {
+            return new PendingBooking(0, CompletableFuture.completedFuture(BookingResult.failed(
+                    "Train " + trainNumber + " has too many booking requests right now. " +
+                    "Please try again shortly.")));
+        }
+        CompletableFuture<BookingResult> result =
+                CompletableFuture.supplyAsync(admission::await, bookingService.getExecutor())
+                .thenCompose(admitted -> admitted ?
+                        bookingService.bookTicketAsync(userId, trainNumber, seats, ticketClass, journeyDate,
+                                                       fromStation, toStation) :
+                        CompletableFuture.completedFuture(BookingResult.failed("Booking request cancelled.")))
+                .exceptionally(e -> failure("Booking error: ", e))
+                .thenApply(booking -> {
+                    booking.setQueuePosition(admission.getPosition());
+                    return booking;
+                });
+        return new PendingBooking(admission.getPosition(), result);
+    }
+    
+    /**
+     * Book many tickets at once and show how each request ended
+     * @return one result per request, in request order
+     */
+    public List<BookingResult> bookTickets(List<BookingRequest> requests) {
         try {
-            return bookingService.bookTicket(userId, trainNumber, seats, ticketClass);
+            List<BookingResult> results = bookingService.bookTickets(requests);
+            int booked = 0;
+            System.out.println("\n=== Bulk Booking ===");
+            for (int i = 0; i < results.size(); i++) {
+                BookingResult result = results.get(i);
+                if (result.isSuccess()) {
+                    booked++;
+                    Ticket ticket = result.getTicket();
+                    System.out.println((i + 1) + ". " + ticket.getBookingId() + " " + ticket.getStatus() + 
+                                       " - Seat Numbers: " + ticket.getSeatNumbers().replace(";", ", ") + 
+                                       ", Rs. " + ticket.getTotalFare());
+                } else {
+                    System.out.println((i + 1) + ". Failed - " + result.getMessage());
+                }
+            }
+            System.out.println("Booked " + booked + " of " + results.size() + " requests.");
+            System.out.println("====================\n");
+            return results;
         } catch (Exception e) {
-            System.err.println("Booking error: " + e.getMessage());
-            return false;
+            System.err.println("Bulk booking error: " + e.getMessage());
+            return new ArrayList<>();
         }
     }
     
@@ -30,34 +139,65 @@ public class BookingController {
      * Cancel a booking
      */
     public boolean cancelBooking(String bookingId, String userId) {
-        try {
-            return bookingService.cancelBooking(bookingId, userId);
-        } catch (Exception e) {
-            System.err.println("Cancellation error: " + e.getMessage());
-            return false;
-        }
+        return bookingService.displayCancellationResult(cancelBookingAsync(bookingId, userId).join());
+    }
+    
+    /**
+     * Cancel a booking without blocking the caller (errors end as failed results)
+     */
+    public CompletableFuture<BookingResult> cancelBookingAsync(String bookingId, String userId) {
+        return bookingService.cancelBookingAsync(bookingId, userId)
+                .exceptionally(e -> failure("Cancellation error: ", e));
+    }
+    
+    /**
+     * Failed result for an exception thrown by an asynchronous call
+     */
+    private static BookingResult failure(String prefix, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return BookingResult.failed(prefix + cause.getMessage());
     }
     
     /**
      * View user bookings
      */
     public void viewUserBookings(String userId) {
+        viewUserBookings(userId, 0);
+    }
+    
+    /**
+     * View one page of user bookings (statistics are shown with the first page)
+     * @return true if there are more pages
+     */
+    public boolean viewUserBookings(String userId, int page) {
         try {
-            List<Ticket> bookings = bookingService.getUserBookings(userId);
+            int total = bookingService.getUserBookingCount(userId);
+            List<Ticket> bookings = bookingService.getUserBookings(userId, 
+                    page * BOOKINGS_PAGE_SIZE, BOOKINGS_PAGE_SIZE);
             
             if (bookings.isEmpty()) {
                 System.out.println("\nNo bookings found.");
-            } else {
-                System.out.println("\n=== Your Bookings ===");
-                for (Ticket ticket : bookings) {
-                    ticket.displayInfo();
+                return false;
+            }
+            
+            int pages = (total + BOOKINGS_PAGE_SIZE - 1) / BOOKINGS_PAGE_SIZE;
+            System.out.println("\n=== Your Bookings (page " + (page + 1) + " of " + pages + ") ===");
+            for (Ticket ticket : bookings) {
+                ticket.displayInfo();
+            }
+            
+            // Display statistics (reuse the page when it holds every booking)
+            if (page == 0) {
+                if (total <= BOOKINGS_PAGE_SIZE) {
+                    bookingService.displayUserStatistics(bookings);
+                } else {
+                    bookingService.displayUserStatistics(userId);
                 }
-                
-                // Display statistics
-                bookingService.displayUserStatistics(userId);
             }
+            return page + 1 < pages;
         } catch (Exception e) {
             System.err.println("Error viewing bookings: " + e.getMessage());
+            return false;
         }
     }
     
@@ -66,16 +206,20 @@ public class BookingController {
      */
     public void viewAllBookings() {
         try {
-            List<Ticket> bookings = bookingService.getAllBookings();
+            int[] count = { 0 };
             
-            if (bookings.isEmpty()) {
+            bookingService.forEachBooking(ticket -> {
+                if (count[0]++ == 0) {
+                    System.out.println("\n=== All Bookings ===");
+                }
+                ticket.displayInfo();
+                return true;
+            });
+            
+            if (count[0] == 0) {
                 System.out.println("\nNo bookings found.");
             } else {
-                System.out.println("\n=== All Bookings ===");
-                for (Ticket ticket : bookings) {
-                    ticket.displayInfo();
-                }
-                System.out.println("Total Bookings: " + bookings.size());
+                System.out.println("Total Bookings: " + count[0]);
             }
         } catch (Exception e) {
             System.err.println("Error viewing all bookings: " + e.getMessage());
@@ -1,7 +1,9 @@
 package controller;
 
+import model.Journey;
 import model.Train;
 import service.TrainService;
+import util.InputValidator;
 import java.util.List;
 
 /**
@@ -28,6 +30,36 @@ public class TrainController {
         }
     }
     
+    /**
+     * Add a new train that also stops at intermediate stations
+     */
+    public boolean addTrain(String trainNumber, String source, String destination,
+                           String departureTime, int totalSeats, double baseFare,
+                           List<String> intermediateStops) {
+        try {
+            return trainService.addTrain(trainNumber, source, destination, 
+                                        departureTime, totalSeats, baseFare, intermediateStops);
+        } catch (Exception e) {
+            System.err.println("Error adding train: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Add a new train with intermediate stations and running minutes to each later stop
+     */
+    public boolean addTrain(String trainNumber, String source, String destination,
+                           String departureTime, int totalSeats, double baseFare,
+                           List<String> intermediateStops, List<Integer> runningMinutes) {
+        try {
+            return trainService.addTrain(trainNumber, source, destination, departureTime, 
+                                        totalSeats, baseFare, intermediateStops, runningMinutes);
+        } catch (Exception e) {
+            System.err.println("Error adding train: " + e.getMessage());
+            return false;
+        }
+    }
+    
     /**
      * Update train details
      */
@@ -55,25 +87,99 @@ public class TrainController {
     }
     
     /**
-     * Search trains by source and destination
+     * Search trains by source and destination, showing seats on a journey date
      */
-    public void searchTrains(String source, String destination) {
+    public void searchTrains(String source, String destination, String journeyDate) {
+        searchTrains(source, destination, journeyDate, "");
+    }
+    
+    /**
+     * Search trains leaving inside a departure window ("06:00-10:00", "after 18:00",
+     * "before 09:30", or blank for any time), earliest departure first
+     */
+    public void searchTrains(String source, String destination, String journeyDate, 
+                             String departureWindow) {
         try {
-            List<Train> trains = trainService.searchTrains(source, destination);
+            int[] window = InputValidator.parseTimeWindow(departureWindow);
+            if (window == null) {
+                System.out.println("Invalid departure window. Use HH:MM-HH:MM, after HH:MM or before HH:MM.");
+                return;
+            }
+            source = correctStation(source);
+            destination = correctStation(destination);
+            List<Train> trains = trainService.searchTrains(source, destination, journeyDate, 
+                                                          window[0], window[1]);
             
-            if (trains.isEmpty()) {
-                System.out.println("\nNo trains found for " + source + " to " + destination);
-            } else {
+            if (!trains.isEmpty()) {
                 System.out.println("\n=== Available Trains ===");
                 for (Train train : trains) {
                     train.displayInfo();
                 }
+            } else if (departureWindow != null && !departureWindow.trim().isEmpty() &&
+                       !trainService.searchTrains(source, destination, journeyDate).isEmpty()) {
+                System.out.println("\nNo trains from " + source + " to " + destination + 
+                                   " leave in " + departureWindow.trim());
+            } else {
+                List<Journey> journeys = trainService.planJourneys(source, destination, journeyDate);
+                if (journeys.isEmpty()) {
+                    System.out.println("\nNo trains found for " + source + " to " + destination);
+                } else {
+                    System.out.println("\nNo direct trains found for " + source + " to " + destination);
+                    System.out.println("\n=== Connecting Journeys ===");
+                    for (Journey journey : journeys) {
+                        journey.displayInfo();
+                    }
+                }
             }
         } catch (Exception e) {
             System.err.println("Error searching trains: " + e.getMessage());
         }
     }
     
+    /**
+     * Station the user meant by what they typed: the station itself, the only one
+     * starting with it, or the only one close to a misspelling; when it could be
+     * several they are listed and null is returned
+     */
+    public String resolveStation(String typed) {
+        try {
+            String station = trainService.findStation(typed);
+            if (station != null || typed == null || typed.trim().isEmpty()) {
+                return station != null ? station : typed;
+            }
+            List<String> suggestions = trainService.suggestStations(typed);
+            if (suggestions.isEmpty()) {
+                suggestions = trainService.closestStations(typed);
+            }
+            if (suggestions.size() == 1) {
+                System.out.println("Using station: " + suggestions.get(0));
+                return suggestions.get(0);
+            }
+            if (suggestions.size() > 1) {
+                System.out.println("Did you mean: " + String.join(", ", suggestions) + "?");
+                return null;
+            }
+        } catch (Exception e) {
+            System.err.println("Error looking up station: " + e.getMessage());
+        }
+        return typed;
+    }
+    
+    /**
+     * The closest station to a name no train stops at, or the name itself
+     */
+    private String correctStation(String station) {
+        if (station == null || trainService.findStation(station) != null) {
+            return station;
+        }
+        List<String> closest = trainService.closestStations(station);
+        if (closest.isEmpty()) {
+            return station;
+        }
+        System.out.println("No station named " + station.trim() + ", showing " + closest.get(0) + ".");
+        return closest.get(0);
+    }
+    
     /**
      * View all trains
      */
@@ -0,0 +1,70 @@
+package model;
+
+/**
+ * BookingRequest holds one booking of a batch (e.g. a travel agent's bulk upload)
+ * Demonstrates Encapsulation
+ */
+public class BookingRequest {
+    private String userId;
+    private String trainNumber;
+    private int seats;
+    private String ticketClass;
+    private String journeyDate;
+    private String fromStation = ""; // empty for the train's source
+    private String toStation = "";   // empty for the train's destination
+
+    public BookingRequest(String userId, String trainNumber, int seats, 
+                          String ticketClass, String journeyDate) {
+        this.userId = userId;
+        this.trainNumber = trainNumber;
+        this.seats = seats;
+        this.ticketClass = ticketClass;
+        this.journeyDate = journeyDate;
+    }
+
+    public BookingRequest(String userId, String trainNumber, int seats, String ticketClass, 
+                          String journeyDate, String fromStation, String toStation) {
+        this(userId, trainNumber, seats, ticketClass, journeyDate);
+        this.fromStation = fromStation == null ? "" : fromStation;
+        this.toStation = toStation == null ? "" : toStation;
+    }
+
+    // Getters
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTrainNumber() {
+        return trainNumber;
+    }
+
+    public int getSeats() {
+        return seats;
+    }
+
+    public String getTicketClass() {
+        return ticketClass;
+    }
+
+    public String getJourneyDate() {
+        return journeyDate;
+    }
+
+    public String getFromStation() {
+        return fromStation;
+    }
+
+    public String getToStation() {
+        return toStation;
+    }
+
+    @Override
+    public String toString() {
+        return "BookingRequest{" +
+                "trainNumber='" + trainNumber + '\'' +
+                ", seats=" + seats +
+                ", ticketClass='" + ticketClass + '\'' +
+                ", journeyDate='" + journeyDate + '\'' +
+                '}';
+    }
+}
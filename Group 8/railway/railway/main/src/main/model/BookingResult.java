@@ -0,0 +1,90 @@
+package model;
+
+/**
+ * BookingResult tells how one booking request ended
+ * Demonstrates Encapsulation
+ */
+public class BookingResult {
+    private boolean success;
+    private Ticket ticket;   // null if the booking failed
+    private String message;
+    private int promotedCount;   // waitlisted tickets confirmed by a cancellation
+    private int queuePosition;   // place in a surge mode line, 0 if admitted at once
+    private int seatsAvailable = -1;   // seats free when the request was waitlisted, -1 if not short
+
+    private BookingResult(boolean success, Ticket ticket, String message) {
+        this.success = success;
+        this.ticket = ticket;
+        this.message = message;
+    }
+
+    /**
+     * Result of a booking that was saved (confirmed or waitlisted)
+     */
+    public static BookingResult booked(Ticket ticket) {
+        return new BookingResult(true, ticket, ticket.getStatus());
+    }
+
+    /**
+     * Result of a cancellation that was saved, with the number of waitlisted
+     * tickets confirmed with the freed seats
+     */
+    public static BookingResult cancelled(Ticket ticket, int promotedCount) {
+        BookingResult result = new BookingResult(true, ticket, ticket.getStatus());
+        result.promotedCount = promotedCount;
+        return result;
+    }
+
+    /**
+     * Result of a booking that was not made, with the reason
+     */
+    public static BookingResult failed(String message) {
+        return new BookingResult(false, null, message);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getPromotedCount() {
+        return promotedCount;
+    }
+
+    /**
+     * Place the request had in its train's surge mode line (1 for the first),
+     * or 0 if it did not have to wait
+     */
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(int queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    /**
+     * Seats that were free when the request was put on the waitlist for lack of
+     * seats, or -1 if it was not short of seats
+     */
+    public int getSeatsAvailable() {
+        return seatsAvailable;
+    }
+
+    public void setSeatsAvailable(int seatsAvailable) {
+        this.seatsAvailable = seatsAvailable;
+    }
+
+    @Override
+    public String toString() {
+        return success ? "BookingResult{" + ticket.getBookingId() + ", " + message + "}" : 
+                         "BookingResult{failed, " + message + "}";
+    }
+}
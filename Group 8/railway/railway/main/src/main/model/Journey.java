@@ -0,0 +1,114 @@
+package model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Journey is a trip on one or more trains, changing trains between legs
+ * Demonstrates Encapsulation
+ */
+public class Journey {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private List<Leg> legs;
+
+    /**
+     * One train ridden from a boarding station to a later stop
+     */
+    public static class Leg {
+        private String trainNumber;
+        private String fromStation;
+        private String toStation;
+        private String journeyDate;   // date the train leaves its source (book the leg for this date)
+        private LocalDateTime departure;
+        private LocalDateTime arrival;
+
+        public Leg(String trainNumber, String fromStation, String toStation, String journeyDate,
+                   LocalDateTime departure, LocalDateTime arrival) {
+            this.trainNumber = trainNumber;
+            this.fromStation = fromStation;
+            this.toStation = toStation;
+            this.journeyDate = journeyDate;
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        public String getTrainNumber() {
+            return trainNumber;
+        }
+
+        public String getFromStation() {
+            return fromStation;
+        }
+
+        public String getToStation() {
+            return toStation;
+        }
+
+        public String getJourneyDate() {
+            return journeyDate;
+        }
+
+        public LocalDateTime getDeparture() {
+            return departure;
+        }
+
+        public LocalDateTime getArrival() {
+            return arrival;
+        }
+    }
+
+    public Journey(List<Leg> legs) {
+        this.legs = new ArrayList<>(legs);
+    }
+
+    public List<Leg> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+
+    public LocalDateTime getDeparture() {
+        return legs.get(0).getDeparture();
+    }
+
+    public LocalDateTime getArrival() {
+        return legs.get(legs.size() - 1).getArrival();
+    }
+
+    /**
+     * Number of times the passenger changes trains
+     */
+    public int getTransfers() {
+        return legs.size() - 1;
+    }
+
+    public void displayInfo() {
+        List<String> stations = new ArrayList<>();
+        stations.add(legs.get(0).getFromStation());
+        for (Leg leg : legs) {
+            stations.add(leg.getToStation());
+        }
+        long minutes = Duration.between(getDeparture(), getArrival()).toMinutes();
+        System.out.println("Journey: " + String.join(" -> ", stations) + " (" +
+                           (getTransfers() == 0 ? "direct" : getTransfers() + " change" +
+                           (getTransfers() > 1 ? "s" : "")) + ")");
+        System.out.println("Departs " + getDeparture().format(TIME_FORMAT) + ", arrives " +
+                           getArrival().format(TIME_FORMAT) + " (" + minutes / 60 + "h " + minutes % 60 + "m)");
+        for (int i = 0; i < legs.size(); i++) {
+            Leg leg = legs.get(i);
+            System.out.println("  " + (i + 1) + ". Train " + leg.getTrainNumber() + ": " +
+                               leg.getFromStation() + " " + leg.getDeparture().format(TIME_FORMAT) + " -> " +
+                               leg.getToStation() + " " + leg.getArrival().format(TIME_FORMAT) +
+                               " (journey date " + leg.getJourneyDate() + ")");
+        }
+        System.out.println("-----------------------------------");
+    }
+
+    @Override
+    public String toString() {
+        return "Journey{legs=" + legs.size() + ", departure=" + getDeparture() + ", arrival=" + getArrival() + "}";
+    }
+}
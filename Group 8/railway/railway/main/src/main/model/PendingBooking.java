@@ -0,0 +1,38 @@
+package model;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * PendingBooking is a booking request that was accepted but has not ended yet
+ * In surge mode it tells the caller its place in the train's line straight away,
+ * before the booking is made
+ * Demonstrates Encapsulation
+ */
+public class PendingBooking {
+    private int queuePosition;   // place in a surge mode line, 0 if admitted at once
+    private CompletableFuture<BookingResult> result;
+
+    public PendingBooking(int queuePosition, CompletableFuture<BookingResult> result) {
+        this.queuePosition = queuePosition;
+        this.result = result;
+    }
+
+    /**
+     * Place the request took in its train's surge mode line (1 for the first),
+     * or 0 if it did not have to wait
+     */
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+
+    public boolean isQueued() {
+        return queuePosition > 0;
+    }
+
+    /**
+     * The booking's result once it is saved, or the reason it was not made
+     */
+    public CompletableFuture<BookingResult> getResult() {
+        return result;
+    }
+}
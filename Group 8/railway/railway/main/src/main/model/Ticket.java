@@ -11,8 +11,13 @@ public class Ticket {
     private int numberOfSeats;
     private String ticketClass;
     private double totalFare;
-    private String status; // Confirmed, Cancelled
+    private String status; // Confirmed, Waitlisted, Cancelled
     private String bookingDate;
+    private String seatNumbers = ""; // e.g. "S1-5;S1-6"
+    private String journeyDate = ""; // empty for bookings made before journey dates
+    private String fromStation = ""; // empty for the train's whole route
+    private String toStation = "";
+    private String waitlistStatus = ""; // e.g. "RAC 2" or "WL 14", not stored
 
     public Ticket(String bookingId, String userId, String trainNumber, 
                   int numberOfSeats, String ticketClass, double totalFare, String status) {
@@ -104,6 +109,59 @@ public class Ticket {
         this.bookingDate = bookingDate;
     }
 
+    public String getSeatNumbers() {
+        return seatNumbers;
+    }
+
+    public void setSeatNumbers(String seatNumbers) {
+        this.seatNumbers = seatNumbers == null ? "" : seatNumbers;
+    }
+
+    /**
+     * Date of travel; older bookings without one travel on their booking date
+     */
+    public String getJourneyDate() {
+        return journeyDate.isEmpty() ? bookingDate : journeyDate;
+    }
+
+    public void setJourneyDate(String journeyDate) {
+        this.journeyDate = journeyDate == null ? "" : journeyDate;
+    }
+
+    /**
+     * Check if the booking was made with a journey date (its seat numbers are date-specific)
+     */
+    public boolean hasJourneyDate() {
+        return !journeyDate.isEmpty();
+    }
+
+    public String getFromStation() {
+        return fromStation;
+    }
+
+    public String getToStation() {
+        return toStation;
+    }
+
+    /**
+     * Set the stations the passenger boards and leaves the train at
+     */
+    public void setJourney(String fromStation, String toStation) {
+        this.fromStation = fromStation == null ? "" : fromStation;
+        this.toStation = toStation == null ? "" : toStation;
+    }
+
+    public String getWaitlistStatus() {
+        return waitlistStatus;
+    }
+
+    /**
+     * Set the current place in line of a waitlisted ticket (e.g. "WL 14")
+     */
+    public void setWaitlistStatus(String waitlistStatus) {
+        this.waitlistStatus = waitlistStatus == null ? "" : waitlistStatus;
+    }
+
     // Business methods
     public void cancelTicket() {
         this.status = "Cancelled";
@@ -113,13 +171,34 @@ public class Ticket {
         return "Confirmed".equals(status);
     }
 
+    public boolean isWaitlisted() {
+        return "Waitlisted".equals(status);
+    }
+
+    /**
+     * Confirm a waitlisted ticket with the seats it was given
+     */
+    public void confirm(String seatNumbers) {
+        this.status = "Confirmed";
+        this.waitlistStatus = "";
+        setSeatNumbers(seatNumbers);
+    }
+
     public void displayInfo() {
         System.out.println("Booking ID: " + bookingId);
         System.out.println("Train Number: " + trainNumber);
         System.out.println("Class: " + ticketClass);
+        if (!fromStation.isEmpty()) {
+            System.out.println("Journey: " + fromStation + " -> " + toStation);
+        }
+        System.out.println("Journey Date: " + getJourneyDate());
         System.out.println("Seats: " + numberOfSeats);
+        if (!seatNumbers.isEmpty()) {
+            System.out.println("Seat Numbers: " + seatNumbers.replace(";", ", "));
+        }
         System.out.println("Total Fare: Rs. " + totalFare);
-        System.out.println("Status: " + status);
+        System.out.println("Status: " + status + 
+                           (waitlistStatus.isEmpty() ? "" : " (" + waitlistStatus + ")"));
         System.out.println("Booking Date: " + bookingDate);
         System.out.println("-----------------------------------");
     }
@@ -127,7 +206,8 @@ public class Ticket {
     public String toFileFormat() {
         return bookingId + "," + userId + "," + trainNumber + "," + 
                numberOfSeats + "," + ticketClass + "," + totalFare + "," + 
-               status + "," + bookingDate;
+               status + "," + bookingDate + "," + seatNumbers + "," + journeyDate + "," +
+               fromStation + "," + toStation;
     }
 
     @Override
@@ -1,10 +1,17 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Train class representing train information
  * Demonstrates Encapsulation
  */
 public class Train {
+    /** Ticket classes in inventory order */
+    public static final String[] TICKET_CLASSES = {"1A", "2A", "3A", "SL"};
+
     private String trainNumber;
     private String source;
     private String destination;
@@ -12,6 +19,11 @@ public class Train {
     private int totalSeats;
     private int availableSeats;
     private double baseFare;
+    private int[] classTotalSeats = new int[TICKET_CLASSES.length];
+    private int[] classAvailableSeats = new int[TICKET_CLASSES.length];
+    private String journeyDate = ""; // date the seat counts are for
+    private List<String> intermediateStops = new ArrayList<>(); // in route order
+    private List<Integer> runningMinutes = new ArrayList<>(); // from departure to each later stop, empty if unknown
 
     public Train(String trainNumber, String source, String destination, 
                  String departureTime, int totalSeats, double baseFare) {
@@ -84,6 +96,114 @@ public class Train {
         this.availableSeats = availableSeats;
     }
 
+    /**
+     * Position of a ticket class in TICKET_CLASSES, or -1 if it is not a class
+     */
+    public static int classIndex(String ticketClass) {
+        if (ticketClass != null) {
+            for (int i = 0; i < TICKET_CLASSES.length; i++) {
+                if (TICKET_CLASSES[i].equalsIgnoreCase(ticketClass.trim())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public int getClassTotalSeats(String ticketClass) {
+        int index = classIndex(ticketClass);
+        return index < 0 ? 0 : classTotalSeats[index];
+    }
+
+    public int getClassAvailableSeats(String ticketClass) {
+        int index = classIndex(ticketClass);
+        return index < 0 ? 0 : classAvailableSeats[index];
+    }
+
+    public void setClassSeats(String ticketClass, int totalSeats, int availableSeats) {
+        int index = classIndex(ticketClass);
+        if (index >= 0) {
+            classTotalSeats[index] = totalSeats;
+            classAvailableSeats[index] = availableSeats;
+        }
+    }
+
+    public String getJourneyDate() {
+        return journeyDate;
+    }
+
+    public void setJourneyDate(String journeyDate) {
+        this.journeyDate = journeyDate == null ? "" : journeyDate;
+    }
+
+    public List<String> getIntermediateStops() {
+        return Collections.unmodifiableList(intermediateStops);
+    }
+
+    public void setIntermediateStops(List<String> intermediateStops) {
+        this.intermediateStops = new ArrayList<>(intermediateStops);
+    }
+
+    /**
+     * All stops in route order, from source to destination
+     */
+    public List<String> getStops() {
+        List<String> stops = new ArrayList<>(intermediateStops.size() + 2);
+        stops.add(source);
+        stops.addAll(intermediateStops);
+        stops.add(destination);
+        return stops;
+    }
+
+    /**
+     * Position of a station in the route, or -1 if the train does not stop there
+     */
+    public int stopIndex(String station) {
+        if (station == null) {
+            return -1;
+        }
+        List<String> stops = getStops();
+        for (int i = 0; i < stops.size(); i++) {
+            if (stops.get(i).equalsIgnoreCase(station.trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of route segments (stop to next stop)
+     */
+    public int getSegmentCount() {
+        return intermediateStops.size() + 1;
+    }
+
+    public List<Integer> getRunningMinutes() {
+        return Collections.unmodifiableList(runningMinutes);
+    }
+
+    public void setRunningMinutes(List<Integer> runningMinutes) {
+        this.runningMinutes = new ArrayList<>(runningMinutes);
+    }
+
+    /**
+     * Check if the timetable gives the arrival at every later stop
+     */
+    public boolean hasTimetable() {
+        return runningMinutes.size() == getSegmentCount();
+    }
+
+    /**
+     * Minutes from departure to arriving at a stop (estimated at segmentMinutes
+     * per segment for trains without a timetable)
+     */
+    public int minutesToStop(int stop, int segmentMinutes) {
+        if (stop == 0) {
+            return 0;
+        }
+        return hasTimetable() ? runningMinutes.get(stop - 1) : stop * segmentMinutes;
+    }
+
     public double getBaseFare() {
         return baseFare;
     }
@@ -127,18 +247,52 @@ public class Train {
         return baseFare * seats * multiplier;
     }
 
+    /**
+     * Fare for part of the route, in proportion to the segments travelled
+     */
+    public double calculateFare(int seats, String ticketClass, int fromStop, int toStop) {
+        return calculateFare(seats, ticketClass) * (toStop - fromStop) / getSegmentCount();
+    }
+
     public void displayInfo() {
         System.out.println("Train Number: " + trainNumber);
-        System.out.println("Route: " + source + " -> " + destination);
+        System.out.println("Route: " + String.join(" -> ", getStops()));
         System.out.println("Departure Time: " + departureTime);
+        if (hasTimetable()) {
+            int minutes = runningMinutes.get(runningMinutes.size() - 1);
+            System.out.println("Running Time: " + minutes / 60 + "h " + minutes % 60 + "m");
+        }
+        if (!journeyDate.isEmpty()) {
+            System.out.println("Journey Date: " + journeyDate);
+        }
         System.out.println("Available Seats: " + availableSeats + "/" + totalSeats);
+        StringBuilder classes = new StringBuilder();
+        for (int i = 0; i < TICKET_CLASSES.length; i++) {
+            if (classTotalSeats[i] > 0) {
+                classes.append(classes.length() > 0 ? " | " : "")
+                       .append(TICKET_CLASSES[i]).append(": ")
+                       .append(classAvailableSeats[i]).append("/").append(classTotalSeats[i]);
+            }
+        }
+        if (classes.length() > 0) {
+            System.out.println("By Class: " + classes);
+        }
         System.out.println("Base Fare: Rs. " + baseFare);
         System.out.println("-----------------------------------");
     }
 
     public String toFileFormat() {
         return trainNumber + "," + source + "," + destination + "," + 
-               departureTime + "," + totalSeats + "," + availableSeats + "," + baseFare;
+               departureTime + "," + totalSeats + "," + availableSeats + "," + baseFare + "," +
+               String.join(";", intermediateStops) + "," + joinMinutes();
+    }
+
+    private String joinMinutes() {
+        StringBuilder minutes = new StringBuilder();
+        for (int i = 0; i < runningMinutes.size(); i++) {
+            minutes.append(i > 0 ? ";" : "").append(runningMinutes.get(i));
+        }
+        return minutes.toString();
     }
 
     @Override
@@ -1,158 +1,679 @@
 package service;
 
+import model.BookingRequest;
+import model.BookingResult;
 import model.Ticket;
 import model.Train;
+import util.CsvCursor;
 import util.FileUtil;
 import util.InputValidator;
+import util.RecordVisitor;
+import util.SeatMap;
 import util.SingletonConnection;
+import util.StripedLock;
+import util.Waitlist;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
 
 /**
  * BookingService handles booking-related business logic
  * Uses Singleton pattern for configuration management
  */
 public class BookingService {
+    /** Cancellations on the same train are serialized, other trains run in parallel */
+    private static final StripedLock TRAIN_LOCKS = new StripedLock(64);
+    
+    /** Runs asynchronous bookings and cancellations of services made without an executor */
+    private static Executor sharedExecutor;
+    
     private TrainService trainService;
     private SingletonConnection config;
+    private Waitlist waitlist;
+    private Executor executor;
     
     public BookingService() {
+        this(sharedExecutor());
+    }
+    
+    /**
+     * Create a service whose asynchronous bookings and cancellations run on an executor
+     * of the caller's choice
+     */
+    public BookingService(Executor executor) {
         this.trainService = new TrainService();
         this.config = SingletonConnection.getInstance();
+        this.waitlist = Waitlist.getInstance();
+        this.executor = executor;
     }
     
     /**
-     * Book a ticket
+     * Executor set by BOOKING_THREADS: a virtual thread per call by default
+     * (waiting on locks and fsyncs then costs no platform thread), or a fixed
+     * pool of daemon platform threads
      */
-    public boolean bookTicket(String userId, String trainNumber, int seats, String ticketClass) {
-        // Validate ticket class
-        if (!InputValidator.isValidTicketClass(ticketClass)) {
-            System.out.println("Invalid ticket class. Choose from: 1A, 2A, 3A, SL");
+    private static synchronized Executor sharedExecutor() {
+        if (sharedExecutor == null) {
+            int threads = SingletonConnection.getInstance().getBookingThreads();
+            if (threads > 0) {
+                sharedExecutor = Executors.newFixedThreadPool(threads,
+                        Thread.ofPlatform().name("booking-", 1).daemon().factory());
+            } else {
+                sharedExecutor = Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("booking-", 1).factory());
+            }
+        }
+        return sharedExecutor;
+    }
+    
+    /**
+     * Executor the asynchronous calls run on
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * Book a ticket for a journey date (YYYY-MM-DD) over the train's whole route
+     */
+    public boolean bookTicket(String userId, String trainNumber, int seats, String ticketClass,
+                              String journeyDate) {
+        return bookTicket(userId, trainNumber, seats, ticketClass, journeyDate, null, null);
+    }
+    
+    /**
+     * Book a ticket for a journey date from one stop of the train to a later one
+     * (a blank station means the train's source or destination)
+     */
+    public boolean bookTicket(String userId, String trainNumber, int seats, String ticketClass,
+                              String journeyDate, String fromStation, String toStation) {
+        return displayBookingResult(await(bookTicketAsync(userId, trainNumber, seats, ticketClass,
+                                                          journeyDate, fromStation, toStation)));
+    }
+    
+    /**
+     * Book a ticket on the service's executor without blocking the caller
+     * (a blank station means the train's source or destination)
+     * @return the booking's result once it is saved, or the reason it was not made
+     */
+    public CompletableFuture<BookingResult> bookTicketAsync(String userId, String trainNumber, int seats,
+                                                            String ticketClass, String journeyDate,
+                                                            String fromStation, String toStation) {
+        return CompletableFuture.supplyAsync(() -> book(userId, trainNumber, seats, ticketClass, journeyDate,
+                                                        fromStation, toStation), executor);
+    }
+    
+    /**
+     * Show how a booking ended (confirmation, place in the waitlist or the reason it failed)
+     * @return true if the booking was saved
+     */
+    public boolean displayBookingResult(BookingResult result) {
+        if (!result.isSuccess()) {
+            System.out.println(result.getMessage());
             return false;
         }
         
-        // Validate seat count
-        int maxSeats = config.getMaxSeatsPerBooking();
-        if (!InputValidator.isValidSeatCount(seats, maxSeats)) {
-            return false;
+        Ticket ticket = result.getTicket();
+        if (result.getSeatsAvailable() >= 0) {
+            System.out.println("Only " + result.getSeatsAvailable() + " seats available in " + 
+                               ticket.getTicketClass() + " from " + ticket.getFromStation() + " to " + 
+                               ticket.getToStation() + " on " + ticket.getJourneyDate() + ".");
+        }
+        if (ticket.isWaitlisted()) {
+            System.out.println("\n=== Booking Waitlisted ===");
+        } else {
+            System.out.println("\n=== Booking Confirmed ===");
         }
+        System.out.println("Booking ID: " + ticket.getBookingId());
+        System.out.println("Train Number: " + ticket.getTrainNumber());
+        System.out.println("Class: " + ticket.getTicketClass());
+        System.out.println("Journey: " + ticket.getFromStation() + " -> " + ticket.getToStation());
+        System.out.println("Journey Date: " + ticket.getJourneyDate());
+        System.out.println("Seats: " + ticket.getNumberOfSeats());
+        if (ticket.isWaitlisted()) {
+            System.out.println("Status: " + ticket.getWaitlistStatus());
+            System.out.println("Total Fare: Rs. " + ticket.getTotalFare());
+            System.out.println("Seats are confirmed automatically when other passengers cancel.");
+            System.out.println("==========================\n");
+        } else {
+            System.out.println("Seat Numbers: " + ticket.getSeatNumbers().replace(";", ", "));
+            System.out.println("Total Fare: Rs. " + ticket.getTotalFare());
+            System.out.println("========================\n");
+        }
+        return true;
+    }
+    
+    /**
+     * Make a booking and tell how it ended, without printing anything
+     */
+    private BookingResult book(String userId, String trainNumber, int seats, String ticketClass,
+                               String journeyDate, String fromStation, String toStation) {
+        // Validate class, seat count and journey date
+        String problem = checkRequest(ticketClass, seats, journeyDate);
+        if (problem != null) {
+            return BookingResult.failed(problem);
+        }
+        ticketClass = ticketClass.toUpperCase();
+        journeyDate = journeyDate.trim();
         
         // Check if train exists
         Train train = trainService.getTrainByNumber(trainNumber);
         if (train == null) {
-            System.out.println("Train not found.");
-            return false;
+            return BookingResult.failed("Train not found.");
         }
         
-        // Check seat availability
-        if (train.getAvailableSeats() < seats) {
-            System.out.println("Only " + train.getAvailableSeats() + " seats available.");
-            return false;
+        // Check the stations are on the route, in travel order
+        int[] stops = resolveStops(train, fromStation, toStation);
+        if (stops == null) {
+            return BookingResult.failed(noRouteMessage(train, fromStation, toStation));
         }
+        int fromStop = stops[0];
+        int toStop = stops[1];
         
-        // Calculate fare
-        double totalFare = train.calculateFare(seats, ticketClass);
-        
-        // Generate booking ID
-        String bookingId = FileUtil.generateNextId(FileUtil.BOOKINGS_FILE, "B");
-        
-        // Create ticket
-        Ticket ticket = new Ticket(bookingId, userId, trainNumber, 
-                                   seats, ticketClass, totalFare, "Confirmed");
+        // Check the class's seat availability and take the seats in one atomic step
+        // (a compare-and-set for direct trains, a segment tree update for multi-stop trains);
+        // while tickets wait for any of the same segments, freed seats are theirs and
+        // new bookings join the line
+        boolean lineWaiting = waitlist.hasWaiting(trainNumber, ticketClass, journeyDate, fromStop, toStop);
+        boolean seatsTaken = !lineWaiting &&
+                trainService.updateTrainSeats(train, ticketClass, journeyDate, fromStop, toStop, seats);
+        if (!seatsTaken) {
+            // Seats free when this request fell short, for the caller to show
+            int seatsAvailable = lineWaiting ? -1 :
+                    trainService.getAvailableSeats(train, ticketClass, journeyDate, fromStop, toStop);
+            Lock lock = TRAIN_LOCKS.get(trainNumber);
+            lock.lock();
+            try {
+                // Cancellations may have emptied the line meanwhile
+                if (!waitlist.hasWaiting(trainNumber, ticketClass, journeyDate, fromStop, toStop) &&
+                        trainService.getAvailableSeats(train, ticketClass, journeyDate, fromStop, toStop) >= seats) {
+                    seatsTaken = trainService.updateTrainSeats(train, ticketClass, journeyDate,
+                                                               fromStop, toStop, seats);
+                }
+                if (!seatsTaken) {
+                    BookingResult result = joinWaitlist(userId, train, seats, ticketClass, journeyDate,
+                                                        fromStop, toStop);
+                    result.setSeatsAvailable(seatsAvailable);
+                    return result;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
         
-        // Update train seats
-        if (!trainService.updateTrainSeats(trainNumber, seats)) {
-            System.out.println("Failed to update train seats.");
-            return false;
+        // Assign seat numbers and save the booking; if storage fails the seats are given back
+        String seatNumbers = null;
+        String bookingId = null;
+        try {
+            seatNumbers = trainService.assignSeats(train, ticketClass, journeyDate, fromStop, toStop, seats);
+            if (seatNumbers == null) {
+                trainService.releaseTrainSeats(train, ticketClass, journeyDate, fromStop, toStop, seats, "");
+                return BookingResult.failed("Could not assign seats.");
+            }
+            
+            // Calculate fare
+            double totalFare = train.calculateFare(seats, ticketClass, fromStop, toStop);
+            
+            // Generate booking ID
+            bookingId = FileUtil.generateNextId(FileUtil.BOOKINGS_FILE, "B");
+            
+            // Create ticket
+            Ticket ticket = new Ticket(bookingId, userId, trainNumber, 
+                                       seats, ticketClass, totalFare, "Confirmed");
+            ticket.setSeatNumbers(seatNumbers);
+            ticket.setJourneyDate(journeyDate);
+            ticket.setJourney(train.getStops().get(fromStop), train.getStops().get(toStop));
+            
+            // Save booking
+            FileUtil.writeToFile(FileUtil.BOOKINGS_FILE, ticket.toFileFormat(), true);
+            
+            return BookingResult.booked(ticket);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error saving booking: " + e.getMessage());
+            undoBooking(train, ticketClass, journeyDate, fromStop, toStop, seats, seatNumbers, bookingId);
+            return BookingResult.failed("Booking could not be saved. Please try again.");
+        }
+    }
+    
+    /**
+     * Give back the seats of a booking that could not be saved (confirming waitlisted
+     * tickets with them) and drop whatever part of its record may have been written
+     */
+    private void undoBooking(Train train, String ticketClass, String journeyDate, int fromStop, int toStop,
+                             int seats, String seatNumbers, String bookingId) {
+        Lock lock = TRAIN_LOCKS.get(train.getTrainNumber());
+        lock.lock();
+        try {
+            trainService.releaseTrainSeats(train, ticketClass, journeyDate, fromStop, toStop, seats,
+                                           seatNumbers == null ? "" : seatNumbers);
+            if (bookingId != null) {
+                FileUtil.deleteFromFile(FileUtil.BOOKINGS_FILE, bookingId);
+            }
+            promoteWaitlisted(train, ticketClass, journeyDate);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error undoing booking " + bookingId + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
         }
+    }
+    
+    /**
+     * Book many tickets at once (e.g. a travel agent's bulk upload)
+     * All requests are validated first, then grouped by train, class and date;
+     * each group's seats are reserved in one pass and everything is saved with one
+     * write per file (bookings, seat maps, segment trees), instead of one per booking
+     * Requests that cannot be seated fail rather than join a waitlist, and requests
+     * for segments with tickets already waiting are not booked ahead of them
+     * @return one result per request, in request order
+     */
+    public List<BookingResult> bookTickets(List<BookingRequest> requests) {
+        BookingResult[] results = new BookingResult[requests.size()];
+        Map<String, Train> trains = new HashMap<>();
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        int[][] stopsOf = new int[requests.size()][];
         
-        // Save booking
-        FileUtil.writeToFile(FileUtil.BOOKINGS_FILE, ticket.toFileFormat(), true);
+        // Validate every request and group the valid ones
+        for (int i = 0; i < requests.size(); i++) {
+            BookingRequest request = requests.get(i);
+            String problem = checkRequest(request.getTicketClass(), request.getSeats(), 
+                                          request.getJourneyDate());
+            if (problem != null) {
+                results[i] = BookingResult.failed(problem);
+                continue;
+            }
+            Train train = trains.computeIfAbsent(request.getTrainNumber(), 
+                                                 trainService::getTrainByNumber);
+            if (train == null) {
+                results[i] = BookingResult.failed("Train not found.");
+                continue;
+            }
+            stopsOf[i] = resolveStops(train, request.getFromStation(), request.getToStation());
+            if (stopsOf[i] == null) {
+                results[i] = BookingResult.failed(noRouteMessage(train, request.getFromStation(), 
+                                                                 request.getToStation()));
+                continue;
+            }
+            groups.computeIfAbsent(SeatMap.keyOf(train.getTrainNumber(), request.getTicketClass(), 
+                                                 request.getJourneyDate().trim()),
+                                   key -> new ArrayList<>()).add(i);
+        }
         
-        System.out.println("\n=== Booking Confirmed ===");
-        System.out.println("Booking ID: " + bookingId);
-        System.out.println("Train Number: " + trainNumber);
-        System.out.println("Class: " + ticketClass);
-        System.out.println("Seats: " + seats);
-        System.out.println("Total Fare: Rs. " + totalFare);
-        System.out.println("========================\n");
+        // Reserve each group's seats in one pass
+        List<Integer> reserved = new ArrayList<>();
+        List<String> seatNumbers = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            BookingRequest first = requests.get(group.get(0));
+            Train train = trains.get(first.getTrainNumber());
+            String ticketClass = first.getTicketClass().toUpperCase();
+            String journeyDate = first.getJourneyDate().trim();
+            for (int i : group) {
+                BookingRequest request = requests.get(i);
+                boolean waiting = waitlist.hasWaiting(train.getTrainNumber(), ticketClass, journeyDate,
+                                                      stopsOf[i][0], stopsOf[i][1]);
+                String seats = waiting ? null : 
+                        trainService.reserveSeats(train, ticketClass, journeyDate,
+                                                  stopsOf[i][0], stopsOf[i][1], request.getSeats());
+                if (seats == null) {
+                    results[i] = BookingResult.failed(waiting ? 
+                            "Waitlisted tickets come first in " + ticketClass + " on " + journeyDate + "." :
+                            "Not enough seats available in " + ticketClass + " on " + journeyDate + ".");
+                } else {
+                    reserved.add(i);
+                    seatNumbers.add(seats);
+                }
+            }
+        }
+        // Save all bookings with one write; if storage fails every reserved seat is given back
+        List<String> bookingIds = null;
+        try {
+            bookingIds = FileUtil.generateNextIds(FileUtil.BOOKINGS_FILE, "B", reserved.size());
+            List<String> lines = new ArrayList<>(reserved.size());
+            for (int k = 0; k < reserved.size(); k++) {
+                int i = reserved.get(k);
+                BookingRequest request = requests.get(i);
+                Train train = trains.get(request.getTrainNumber());
+                String ticketClass = request.getTicketClass().toUpperCase();
+                int[] stops = stopsOf[i];
+                Ticket ticket = new Ticket(bookingIds.get(k), request.getUserId(), train.getTrainNumber(),
+                                           request.getSeats(), ticketClass,
+                                           train.calculateFare(request.getSeats(), ticketClass, stops[0], stops[1]),
+                                           "Confirmed");
+                ticket.setSeatNumbers(seatNumbers.get(k));
+                ticket.setJourneyDate(request.getJourneyDate().trim());
+                ticket.setJourney(train.getStops().get(stops[0]), train.getStops().get(stops[1]));
+                lines.add(ticket.toFileFormat());
+                results[i] = BookingResult.booked(ticket);
+            }
+            trainService.saveSeats(groups.keySet());
+            FileUtil.appendAllToFile(FileUtil.BOOKINGS_FILE, lines);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error saving bookings: " + e.getMessage());
+            for (int k = 0; k < reserved.size(); k++) {
+                int i = reserved.get(k);
+                BookingRequest request = requests.get(i);
+                undoBooking(trains.get(request.getTrainNumber()), request.getTicketClass().toUpperCase(),
+                            request.getJourneyDate().trim(), stopsOf[i][0], stopsOf[i][1],
+                            request.getSeats(), seatNumbers.get(k), bookingIds == null ? null : bookingIds.get(k));
+                results[i] = BookingResult.failed("Booking could not be saved. Please try again.");
+            }
+        }
         
-        return true;
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Check a booking's class, seat count and journey date
+     * @return what is wrong with the booking, or null if it is valid
+     */
+    private String checkRequest(String ticketClass, int seats, String journeyDate) {
+        if (!InputValidator.isValidTicketClass(ticketClass)) {
+            return "Invalid ticket class. Choose from: 1A, 2A, 3A, SL";
+        }
+        int maxSeats = config.getMaxSeatsPerBooking();
+        if (seats <= 0) {
+            return "Number of seats must be positive.";
+        }
+        if (seats > maxSeats) {
+            return "Cannot book more than " + maxSeats + " seats at once.";
+        }
+        return trainService.checkBookableDate(journeyDate);
+    }
+    
+    /**
+     * Stop indexes of the stations a booking boards and leaves the train at
+     * (a blank station means the train's source or destination)
+     * @return {fromStop, toStop}, or null if the train does not run between them
+     */
+    private int[] resolveStops(Train train, String fromStation, String toStation) {
+        int fromStop = fromStation == null || fromStation.trim().isEmpty() ? 0 : train.stopIndex(fromStation);
+        int toStop = toStation == null || toStation.trim().isEmpty() ? 
+                     train.getSegmentCount() : train.stopIndex(toStation);
+        if (fromStop < 0 || toStop <= fromStop) {
+            return null;
+        }
+        return new int[] { fromStop, toStop };
+    }
+    
+    private String noRouteMessage(Train train, String fromStation, String toStation) {
+        return "Train " + train.getTrainNumber() + " does not run from " + 
+               (fromStation == null || fromStation.trim().isEmpty() ? train.getSource() : fromStation) + " to " + 
+               (toStation == null || toStation.trim().isEmpty() ? train.getDestination() : toStation) + ".";
+    }
+    
+    /**
+     * Save a ticket that found no free seats as waitlisted and put it at the end of the line
+     * Called under the train's lock, so it cannot miss a promotion
+     */
+    private BookingResult joinWaitlist(String userId, Train train, int seats, String ticketClass,
+                                       String journeyDate, int fromStop, int toStop) {
+        String bookingId = null;
+        Ticket ticket;
+        try {
+            bookingId = FileUtil.generateNextId(FileUtil.BOOKINGS_FILE, "B");
+            ticket = new Ticket(bookingId, userId, train.getTrainNumber(), seats, ticketClass,
+                                train.calculateFare(seats, ticketClass, fromStop, toStop), "Waitlisted");
+            ticket.setJourneyDate(journeyDate);
+            ticket.setJourney(train.getStops().get(fromStop), train.getStops().get(toStop));
+            FileUtil.writeToFile(FileUtil.BOOKINGS_FILE, ticket.toFileFormat(), true);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error saving waitlisted booking: " + e.getMessage());
+            if (bookingId != null) {
+                try {
+                    FileUtil.deleteFromFile(FileUtil.BOOKINGS_FILE, bookingId);
+                } catch (UncheckedIOException undoError) {
+                    System.err.println("Error undoing booking " + bookingId + ": " + undoError.getMessage());
+                }
+            }
+            return BookingResult.failed("Booking could not be saved. Please try again.");
+        }
+        int position = waitlist.join(train.getTrainNumber(), ticketClass, journeyDate, bookingId,
+                                     fromStop, toStop, seats);
+        ticket.setWaitlistStatus(waitlist.statusOf(position));
+        return BookingResult.booked(ticket);
+    }
+    
+    /**
+     * Confirm waitlisted tickets of a class on a date, in line order, whose seats
+     * are free; a ticket whose segments are still full keeps its place and the
+     * ones behind it are tried, since they may travel on other segments or need fewer seats
+     * Each step asks the waitlist for the first ticket the free seats can take, which
+     * checks one ticket per kind of request (stops and seats) instead of the whole
+     * line, and promotion stops as soon as the free seats can take no request
+     * Called under the train's lock right after a cancellation released seats
+     * @return number of tickets confirmed
+     */
+    private int promoteWaitlisted(Train train, String ticketClass, String journeyDate) {
+        int promoted = 0;
+        // Requests that fit the free seat counts but got no seats; skipped for the rest of this pass
+        Set<String> notSeated = new HashSet<>();
+        while (true) {
+            String bookingId = waitlist.firstFitting(train.getTrainNumber(), ticketClass, journeyDate,
+                    (fromStop, toStop, seats) -> !notSeated.contains(fromStop + "/" + toStop + "/" + seats) &&
+                            trainService.getAvailableSeats(train, ticketClass, journeyDate,
+                                                           fromStop, toStop) >= seats);
+            if (bookingId == null) {
+                break;
+            }
+            int[] request = waitlist.requestOf(bookingId);
+            Ticket ticket = getBookingById(bookingId);
+            if (request == null || ticket == null || !ticket.isWaitlisted()) {
+                waitlist.remove(bookingId);
+                continue;
+            }
+            String requestKey = request[0] + "/" + request[1] + "/" + request[2];
+            
+            int[] stops = stopsOf(train, ticket);
+            int seats = ticket.getNumberOfSeats();
+            if (!trainService.updateTrainSeats(train, ticketClass, journeyDate, stops[0], stops[1], seats)) {
+                notSeated.add(requestKey);
+                continue;
+            }
+            String seatNumbers = trainService.assignSeats(train, ticketClass, journeyDate,
+                                                          stops[0], stops[1], seats);
+            if (seatNumbers == null) {
+                trainService.releaseTrainSeats(train, ticketClass, journeyDate, stops[0], stops[1], seats, "");
+                notSeated.add(requestKey);
+                continue;
+            }
+            
+            String waiting = ticket.toFileFormat();
+            ticket.confirm(seatNumbers);
+            if (!saveOrRestore(bookingId, ticket.toFileFormat(), waiting)) {
+                trainService.releaseTrainSeats(train, ticketClass, journeyDate, stops[0], stops[1], seats,
+                                               seatNumbers);
+                break;
+            }
+            waitlist.remove(bookingId);
+            promoted++;
+        }
+        return promoted;
+    }
+    
+    /**
+     * Stop indexes a ticket boards and leaves the train at (the whole route
+     * for older tickets, or if its stations are no longer on the route)
+     */
+    private int[] stopsOf(Train train, Ticket ticket) {
+        int[] stops = resolveStops(train, ticket.getFromStation(), ticket.getToStation());
+        return stops != null ? stops : new int[] { 0, train.getSegmentCount() };
     }
     
     /**
      * Cancel a booking
      */
     public boolean cancelBooking(String bookingId, String userId) {
+        return displayCancellationResult(await(cancelBookingAsync(bookingId, userId)));
+    }
+    
+    /**
+     * Cancel a booking on the service's executor without blocking the caller
+     * @return the cancelled ticket's result, or the reason it was not cancelled
+     */
+    public CompletableFuture<BookingResult> cancelBookingAsync(String bookingId, String userId) {
+        return CompletableFuture.supplyAsync(() -> cancel(bookingId, userId), executor);
+    }
+    
+    /**
+     * Show how a cancellation ended (refund and confirmed waitlisted tickets, or the reason it failed)
+     * @return true if the booking was cancelled
+     */
+    public boolean displayCancellationResult(BookingResult result) {
+        if (!result.isSuccess()) {
+            System.out.println(result.getMessage());
+            return false;
+        }
+        System.out.println("Booking cancelled successfully!");
+        System.out.println("Refund of Rs. " + result.getTicket().getTotalFare() + " will be processed.");
+        if (result.getPromotedCount() > 0) {
+            System.out.println(result.getPromotedCount() + " waitlisted booking(s) confirmed with the freed seats.");
+        }
+        return true;
+    }
+    
+    /**
+     * Cancel a booking and tell how it ended, without printing anything
+     */
+    private BookingResult cancel(String bookingId, String userId) {
         // Check if cancellation is allowed
         if (!config.isCancellationAllowed()) {
-            System.out.println("Cancellation is currently not allowed.");
-            return false;
+            return BookingResult.failed("Cancellation is currently not allowed.");
         }
         
         // Get booking
         Ticket ticket = getBookingById(bookingId);
         
         if (ticket == null) {
-            System.out.println("Booking not found.");
-            return false;
+            return BookingResult.failed("Booking not found.");
         }
         
         // Verify user owns this booking
         if (!ticket.getUserId().equals(userId)) {
-            System.out.println("You are not authorized to cancel this booking.");
-            return false;
+            return BookingResult.failed("You are not authorized to cancel this booking.");
         }
         
-        // Check if already cancelled
-        if ("Cancelled".equals(ticket.getStatus())) {
-            System.out.println("Booking already cancelled.");
-            return false;
+        // Re-read the status under the train's lock so a booking is only released once
+        boolean updated;
+        int promoted = 0;
+        Lock lock = TRAIN_LOCKS.get(ticket.getTrainNumber());
+        lock.lock();
+        try {
+            ticket = getBookingById(bookingId);
+            if (ticket == null) {
+                return BookingResult.failed("Booking not found.");
+            }
+            
+            // Check if already cancelled
+            if ("Cancelled".equals(ticket.getStatus())) {
+                return BookingResult.failed("Booking already cancelled.");
+            }
+            
+            // Update ticket status
+            String status = ticket.getStatus();
+            String original = ticket.toFileFormat();
+            ticket.cancelTicket();
+            
+            // Update booking file (seats are only released once the cancellation is saved)
+            updated = saveOrRestore(bookingId, ticket.toFileFormat(), original);
+            
+            // A waitlisted ticket holds no seats, it only leaves the line
+            if ("Waitlisted".equals(status)) {
+                if (updated) {
+                    waitlist.remove(bookingId);
+                }
+            } else {
+                // Release seats (seat numbers of bookings made before journey dates
+                // belong to no date's seat map, so only their count is given back)
+                // and confirm waitlisted tickets with them before the lock is released
+                Train train = updated ? trainService.getTrainByNumber(ticket.getTrainNumber()) : null;
+                if (train != null) {
+                    int[] stops = stopsOf(train, ticket);
+                    trainService.releaseTrainSeats(train, ticket.getTicketClass(), ticket.getJourneyDate(),
+                                                   stops[0], stops[1], ticket.getNumberOfSeats(),
+                                                   ticket.hasJourneyDate() ? ticket.getSeatNumbers() : "");
+                    promoted = promoteWaitlisted(train, ticket.getTicketClass(), ticket.getJourneyDate());
+                }
+            }
+        } finally {
+            lock.unlock();
         }
         
-        // Update ticket status
-        ticket.cancelTicket();
-        
-        // Release seats
-        trainService.releaseTrainSeats(ticket.getTrainNumber(), ticket.getNumberOfSeats());
-        
-        // Update booking file
-        boolean updated = FileUtil.updateInFile(FileUtil.BOOKINGS_FILE, 
-                                               bookingId, ticket.toFileFormat());
-        
-        if (updated) {
-            System.out.println("Booking cancelled successfully!");
-            System.out.println("Refund of Rs. " + ticket.getTotalFare() + " will be processed.");
+        if (!updated) {
+            return BookingResult.failed("Could not update booking " + bookingId + ".");
         }
-        
-        return updated;
+        return BookingResult.cancelled(ticket, promoted);
     }
     
     /**
-     * Get booking by ID
+     * Save a changed booking; if it cannot be saved, try to put the previous version
+     * back, as a write that failed to sync may still have reached the log
+     * @return true if the change was saved
      */
-    public Ticket getBookingById(String bookingId) {
-        List<String> bookings = FileUtil.readFromFile(FileUtil.BOOKINGS_FILE);
-        
-        for (String line : bookings) {
-            if (line.startsWith(bookingId + ",")) {
-                return parseTicketFromLine(line);
+    private boolean saveOrRestore(String bookingId, String line, String previous) {
+        try {
+            return FileUtil.updateInFile(FileUtil.BOOKINGS_FILE, bookingId, line);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error saving booking " + bookingId + ": " + e.getMessage());
+            try {
+                FileUtil.updateInFile(FileUtil.BOOKINGS_FILE, bookingId, previous);
+            } catch (UncheckedIOException restoreError) {
+                System.err.println("Error restoring booking " + bookingId + ": " + restoreError.getMessage());
             }
+            return false;
+        }
+    }
+    
+    /**
+     * Wait for an asynchronous call, rethrowing what it threw
+     */
+    private static BookingResult await(CompletableFuture<BookingResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
-        
-        return null;
+    }
+    
+    /**
+     * Get booking by ID
+     */
+    public Ticket getBookingById(String bookingId) {
+        String line = FileUtil.findInFile(FileUtil.BOOKINGS_FILE, bookingId);
+        return line == null ? null : parseTicketFromLine(line);
     }
     
     /**
      * Get all bookings for a user
      */
     public List<Ticket> getUserBookings(String userId) {
+        return getUserBookings(userId, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Get one page of a user's bookings, oldest first
+     * Uses the userId index, so only this user's bookings are read
+     */
+    public List<Ticket> getUserBookings(String userId, int from, int limit) {
         List<Ticket> userBookings = new ArrayList<>();
-        List<String> bookings = FileUtil.readFromFile(FileUtil.BOOKINGS_FILE);
+        List<String> bookings = FileUtil.findByField(FileUtil.BOOKINGS_FILE, userId, from, limit);
         
+        CsvCursor fields = new CsvCursor("");
         for (String line : bookings) {
-            Ticket ticket = parseTicketFromLine(line);
-            if (ticket != null && ticket.getUserId().equals(userId)) {
+            Ticket ticket = parseTicket(fields.reset(line));
+            if (ticket != null) {
                 userBookings.add(ticket);
             }
         }
@@ -160,29 +681,47 @@ public class BookingService {
         return userBookings;
     }
     
+    /**
+     * Get number of bookings made by a user
+     */
+    public int getUserBookingCount(String userId) {
+        return FileUtil.countByField(FileUtil.BOOKINGS_FILE, userId);
+    }
+    
     /**
      * Get all bookings
      */
     public List<Ticket> getAllBookings() {
         List<Ticket> allBookings = new ArrayList<>();
-        List<String> bookings = FileUtil.readFromFile(FileUtil.BOOKINGS_FILE);
-        
-        for (String line : bookings) {
-            Ticket ticket = parseTicketFromLine(line);
-            if (ticket != null) {
-                allBookings.add(ticket);
-            }
-        }
-        
+        forEachBooking(ticket -> allBookings.add(ticket));
         return allBookings;
     }
     
+    /**
+     * Stream over all bookings without loading them into memory,
+     * stopping when the visitor returns false
+     */
+    public void forEachBooking(RecordVisitor<Ticket> visitor) {
+        CsvCursor fields = new CsvCursor("");
+        FileUtil.forEachRecord(FileUtil.BOOKINGS_FILE, line -> {
+            Ticket ticket = parseTicket(fields.reset(line));
+            return ticket == null || visitor.visit(ticket);
+        });
+    }
+    
     /**
      * Get booking statistics for a user
      */
     public void displayUserStatistics(String userId) {
-        List<Ticket> bookings = getUserBookings(userId);
+        displayUserStatistics(getUserBookings(userId));
+    }
+    
+    /**
+     * Display booking statistics for bookings that were already loaded
+     */
+    public void displayUserStatistics(List<Ticket> bookings) {
         int confirmed = 0;
+        int waitlisted = 0;
         int cancelled = 0;
         double totalSpent = 0;
         
@@ -190,6 +729,8 @@ public class BookingService {
             if ("Confirmed".equals(ticket.getStatus())) {
                 confirmed++;
                 totalSpent += ticket.getTotalFare();
+            } else if (ticket.isWaitlisted()) {
+                waitlisted++;
             } else if ("Cancelled".equals(ticket.getStatus())) {
                 cancelled++;
             }
@@ -198,6 +739,7 @@ public class BookingService {
         System.out.println("\n=== Your Booking Statistics ===");
         System.out.println("Total Bookings: " + bookings.size());
         System.out.println("Confirmed: " + confirmed);
+        System.out.println("Waitlisted: " + waitlisted);
         System.out.println("Cancelled: " + cancelled);
         System.out.println("Total Spent: Rs. " + totalSpent);
         System.out.println("==============================\n");
@@ -207,19 +749,43 @@ public class BookingService {
      * Parse ticket from file line
      */
     private Ticket parseTicketFromLine(String line) {
+        return parseTicket(new CsvCursor(line));
+    }
+    
+    /**
+     * Parse ticket from the line a cursor is on
+     * (scans reuse one cursor for every line instead of making one per line)
+     */
+    private Ticket parseTicket(CsvCursor fields) {
         try {
-            String[] parts = line.split(",");
-            if (parts.length >= 8) {
-                return new Ticket(
-                    parts[0].trim(),
-                    parts[1].trim(),
-                    parts[2].trim(),
-                    Integer.parseInt(parts[3].trim()),
-                    parts[4].trim(),
-                    Double.parseDouble(parts[5].trim()),
-                    parts[6].trim(),
-                    parts[7].trim()
+            int fieldCount = fields.fieldCount();
+            if (fieldCount >= 8) {
+                Ticket ticket = new Ticket(
+                    fields.nextString(),
+                    fields.nextString(),
+                    fields.nextString(),
+                    fields.nextInt(),
+                    fields.nextString(),
+                    fields.nextDouble(),
+                    fields.nextString(),
+                    fields.nextString()
                 );
+                if (fieldCount >= 9) {
+                    ticket.setSeatNumbers(fields.nextString());
+                }
+                if (fieldCount >= 10) {
+                    ticket.setJourneyDate(fields.nextString());
+                }
+                if (fieldCount >= 12) {
+                    ticket.setJourney(fields.nextString(), fields.nextString());
+                }
+                if (ticket.isWaitlisted()) {
+                    int position = waitlist.positionOf(ticket.getBookingId());
+                    if (position > 0) {
+                        ticket.setWaitlistStatus(waitlist.statusOf(position));
+                    }
+                }
+                return ticket;
             }
         } catch (Exception e) {
             System.err.println("Error parsing ticket data: " + e.getMessage());
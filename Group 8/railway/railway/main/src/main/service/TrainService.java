@@ -1,26 +1,80 @@
 package service;
 
+import model.Journey;
 import model.Train;
+import util.CsvCursor;
 import util.FileUtil;
 import util.InputValidator;
+import util.JourneyPlanner;
+import util.RecordVisitor;
+import util.RouteIndex;
+import util.SeatMap;
+import util.SegmentInventory;
+import util.StationDictionary;
+import util.TrainInventoryFile;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * TrainService handles train-related business logic
  */
 public class TrainService {
+    private TrainInventoryFile inventory;
+    private SeatMap seatMap;
+    private SegmentInventory segments;
+    private RouteIndex routeIndex;
+    private JourneyPlanner planner;
+    private StationDictionary stations;
+    
+    public TrainService() {
+        this.inventory = TrainInventoryFile.getInstance();
+        this.seatMap = SeatMap.getInstance();
+        this.segments = SegmentInventory.getInstance();
+        this.routeIndex = RouteIndex.getInstance();
+        this.planner = JourneyPlanner.getInstance();
+        this.stations = StationDictionary.getInstance();
+    }
     
     /**
      * Add a new train
      */
     public boolean addTrain(String trainNumber, String source, String destination,
                            String departureTime, int totalSeats, double baseFare) {
+        return addTrain(trainNumber, source, destination, departureTime, totalSeats, 
+                        baseFare, new ArrayList<>());
+    }
+    
+    /**
+     * Add a new train that also stops at the given stations, in route order
+     */
+    public boolean addTrain(String trainNumber, String source, String destination,
+                           String departureTime, int totalSeats, double baseFare,
+                           List<String> intermediateStops) {
+        return addTrain(trainNumber, source, destination, departureTime, totalSeats,
+                        baseFare, intermediateStops, new ArrayList<>());
+    }
+    
+    /**
+     * Add a new train with its timetable: minutes from departure to each later stop
+     * (empty to estimate them from the default time per segment)
+     */
+    public boolean addTrain(String trainNumber, String source, String destination,
+                           String departureTime, int totalSeats, double baseFare,
+                           List<String> intermediateStops, List<Integer> runningMinutes) {
         // Validate inputs
         if (trainNumber == null || trainNumber.trim().isEmpty()) {
             System.out.println("Train number cannot be empty.");
             return false;
         }
+        if (trainNumber.length() > TrainInventoryFile.MAX_TRAIN_NUMBER_LENGTH) {
+            System.out.println("Train number cannot be longer than " + 
+                               TrainInventoryFile.MAX_TRAIN_NUMBER_LENGTH + " characters.");
+            return false;
+        }
         if (source == null || source.trim().isEmpty()) {
             System.out.println("Source cannot be empty.");
             return false;
@@ -51,9 +105,44 @@ public class TrainService {
         // Create train object
         Train train = new Train(trainNumber, source, destination, 
                                departureTime, totalSeats, baseFare);
+        List<String> stops = new ArrayList<>();
+        for (String stop : intermediateStops) {
+            String station = InputValidator.sanitizeInput(stop);
+            if (!station.isEmpty()) {
+                stops.add(station);
+            }
+        }
+        train.setIntermediateStops(stops);
+        List<String> route = train.getStops();
+        for (int i = 1; i < route.size(); i++) {
+            if (train.stopIndex(route.get(i)) != i) {
+                System.out.println("Stop " + route.get(i) + " appears more than once on the route.");
+                return false;
+            }
+        }
+        if (!runningMinutes.isEmpty()) {
+            if (runningMinutes.size() != train.getSegmentCount()) {
+                System.out.println("Enter running minutes for each of the " + train.getSegmentCount() + 
+                                   " stops after the source.");
+                return false;
+            }
+            int previous = 0;
+            for (int minutes : runningMinutes) {
+                if (minutes <= previous) {
+                    System.out.println("Running minutes must be positive and increase along the route.");
+                    return false;
+                }
+                previous = minutes;
+            }
+            train.setRunningMinutes(runningMinutes);
+        }
         
-        // Save to file
+        // Save to file, create its seat inventory record and index its route
         FileUtil.writeToFile(FileUtil.TRAINS_FILE, train.toFileFormat(), true);
+        inventory.addTrain(trainNumber, totalSeats);
+        routeIndex.put(train);
+        planner.put(train);
+        stations.addTrain(train);
         System.out.println("Train added successfully!");
         return true;
     }
@@ -90,15 +179,28 @@ public class TrainService {
         train.setBaseFare(baseFare);
         
         // Adjust available seats if total seats changed
-        if (train.getAvailableSeats() > totalSeats) {
-            train.setAvailableSeats(totalSeats);
+        int[] oldClassTotals = new int[Train.TICKET_CLASSES.length];
+        for (int c = 0; c < Train.TICKET_CLASSES.length; c++) {
+            oldClassTotals[c] = inventory.getTotalSeats(trainNumber, c);
         }
+        inventory.setTotalSeats(trainNumber, totalSeats);
+        for (int c = 0; c < Train.TICKET_CLASSES.length; c++) {
+            int classTotal = inventory.getTotalSeats(trainNumber, c);
+            seatMap.setTotalSeats(trainNumber, Train.TICKET_CLASSES[c], classTotal);
+            if (train.getSegmentCount() > 1) {
+                segments.setTotalSeats(trainNumber, Train.TICKET_CLASSES[c], 
+                                       oldClassTotals[c], classTotal);
+            }
+        }
+        applyInventory(train, LocalDate.now().toEpochDay());
         
         // Update in file
         boolean updated = FileUtil.updateInFile(FileUtil.TRAINS_FILE, 
                                                trainNumber, train.toFileFormat());
         
         if (updated) {
+            routeIndex.put(train);
+            planner.put(train);
             System.out.println("Train updated successfully!");
         }
         
@@ -109,7 +211,8 @@ public class TrainService {
      * Delete a train
      */
     public boolean deleteTrain(String trainNumber) {
-        if (!trainExists(trainNumber)) {
+        Train train = getTrainByNumber(trainNumber);
+        if (train == null) {
             System.out.println("Train not found.");
             return false;
         }
@@ -117,6 +220,12 @@ public class TrainService {
         boolean deleted = FileUtil.deleteFromFile(FileUtil.TRAINS_FILE, trainNumber);
         
         if (deleted) {
+            routeIndex.remove(trainNumber);
+            planner.remove(trainNumber);
+            stations.removeTrain(train);
+            inventory.removeTrain(trainNumber);
+            seatMap.removeTrain(trainNumber);
+            segments.removeTrain(trainNumber);
             System.out.println("Train deleted successfully!");
         }
         
@@ -124,37 +233,99 @@ public class TrainService {
     }
     
     /**
-     * Search trains by source and destination
+     * Search trains that stop at source and later at destination, with seats
+     * available for that part of the route on a journey date
+     * Uses the route index, so only the matching trains are read
      */
-    public List<Train> searchTrains(String source, String destination) {
+    public List<Train> searchTrains(String source, String destination, String journeyDate) {
         List<Train> matchingTrains = new ArrayList<>();
-        List<String> trains = FileUtil.readFromFile(FileUtil.TRAINS_FILE);
-        
-        for (String line : trains) {
-            Train train = parseTrainFromLine(line);
-            if (train != null && 
-                train.getSource().equalsIgnoreCase(source) && 
-                train.getDestination().equalsIgnoreCase(destination)) {
-                matchingTrains.add(train);
-            }
+        if (!isBookableDate(journeyDate)) {
+            return matchingTrains;
+        }
+        
+        String date = journeyDate.trim();
+        long epochDay = epochDayOf(date);
+        for (RouteIndex.Route route : routeIndex.find(source, destination)) {
+            Train train = copyOf(route.getTrain(), date, epochDay);
+            applySegments(train, date, route.getFromStop(), route.getToStop());
+            matchingTrains.add(train);
         }
         
         return matchingTrains;
     }
     
     /**
-     * Get train by number
+     * Search trains between two stations that leave their source inside a departure
+     * window (minutes of the day, inclusive; a window past midnight wraps around),
+     * ordered by departure time
      */
-    public Train getTrainByNumber(String trainNumber) {
-        List<String> trains = FileUtil.readFromFile(FileUtil.TRAINS_FILE);
+    public List<Train> searchTrains(String source, String destination, String journeyDate,
+                                    int fromMinute, int toMinute) {
+        List<Train> matchingTrains = new ArrayList<>();
+        if (!isBookableDate(journeyDate)) {
+            return matchingTrains;
+        }
         
-        for (String line : trains) {
-            if (line.startsWith(trainNumber + ",")) {
-                return parseTrainFromLine(line);
-            }
+        String date = journeyDate.trim();
+        long epochDay = epochDayOf(date);
+        for (RouteIndex.Route route : routeIndex.findDeparting(source, destination, fromMinute, toMinute)) {
+            Train train = copyOf(route.getTrain(), date, epochDay);
+            applySegments(train, date, route.getFromStop(), route.getToStop());
+            matchingTrains.add(train);
         }
         
-        return null;
+        return matchingTrains;
+    }
+    
+    /**
+     * Stations starting with what has been typed so far (any case), busiest first
+     */
+    public List<String> suggestStations(String prefix) {
+        return stations.complete(prefix);
+    }
+    
+    /**
+     * Stations close to a misspelled name, closest first
+     */
+    public List<String> closestStations(String station) {
+        return stations.closest(station);
+    }
+    
+    /**
+     * A station's name as spelled in the timetable, or null if no train stops there
+     */
+    public String findStation(String station) {
+        return stations.lookup(station);
+    }
+    
+    /**
+     * Journeys from source to destination on a journey date, changing trains where
+     * needed (from now on if the date is today): the first has the fewest changes,
+     * each later one arrives earlier with more changes
+     */
+    public List<Journey> planJourneys(String source, String destination, String journeyDate) {
+        if (!isBookableDate(journeyDate)) {
+            return new ArrayList<>();
+        }
+        LocalDate date = LocalDate.parse(journeyDate.trim());
+        LocalTime now = LocalTime.now();
+        int fromMinute = date.equals(LocalDate.now()) ? now.getHour() * 60 + now.getMinute() : 0;
+        return planner.plan(source, destination, date, fromMinute);
+    }
+    
+    /**
+     * Get train by number, with today's seats
+     */
+    public Train getTrainByNumber(String trainNumber) {
+        return getTrainByNumber(trainNumber, LocalDate.now().toString());
+    }
+    
+    /**
+     * Get train by number, with seats available on a journey date
+     */
+    public Train getTrainByNumber(String trainNumber, String journeyDate) {
+        String line = FileUtil.findInFile(FileUtil.TRAINS_FILE, trainNumber);
+        return line == null ? null : parseTrainFromLine(line, journeyDate);
     }
     
     /**
@@ -162,18 +333,55 @@ public class TrainService {
      */
     public List<Train> getAllTrains() {
         List<Train> trainList = new ArrayList<>();
-        List<String> trains = FileUtil.readFromFile(FileUtil.TRAINS_FILE);
-        
-        for (String line : trains) {
-            Train train = parseTrainFromLine(line);
-            if (train != null) {
-                trainList.add(train);
-            }
-        }
-        
+        forEachTrain(train -> trainList.add(train));
         return trainList;
     }
     
+    /**
+     * Stream over all trains with today's seats, stopping when the visitor returns false
+     */
+    public void forEachTrain(RecordVisitor<Train> visitor) {
+        forEachTrain(LocalDate.now().toString(), visitor);
+    }
+    
+    /**
+     * Stream over all trains with seats available on a journey date
+     */
+    public void forEachTrain(String journeyDate, RecordVisitor<Train> visitor) {
+        FileUtil.forEachRecord(FileUtil.TRAINS_FILE, line -> {
+            Train train = parseTrainFromLine(line, journeyDate);
+            return train == null || visitor.visit(train);
+        });
+    }
+    
+    /**
+     * Check that a journey date is valid and inside the booking window
+     */
+    public boolean isBookableDate(String journeyDate) {
+        String problem = checkBookableDate(journeyDate);
+        if (problem != null) {
+            System.out.println(problem);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Check that a journey date is valid and inside the booking window
+     * @return what is wrong with the date, or null if it can be booked
+     */
+    public String checkBookableDate(String journeyDate) {
+        if (!InputValidator.isValidDate(journeyDate)) {
+            return "Invalid date format. Use YYYY-MM-DD format.";
+        }
+        if (!inventory.isBookable(epochDayOf(journeyDate))) {
+            LocalDate today = LocalDate.now();
+            return "Journey date must be between " + today + " and " + 
+                   today.plusDays(inventory.getWindowDays() - 1) + ".";
+        }
+        return null;
+    }
+    
     /**
      * Check if train exists
      */
@@ -182,60 +390,246 @@ public class TrainService {
     }
     
     /**
-     * Update train seat availability
+     * Update train seat availability for one class on a journey date
+     * Checks and takes the seats in one atomic step on the date's class counter
+     * Prints nothing, as bookings call it from worker threads
+     * @return false if the train is unknown or the seats are not free
      */
-    public boolean updateTrainSeats(String trainNumber, int seatsToBook) {
-        Train train = getTrainByNumber(trainNumber);
-        
-        if (train == null) {
+    public boolean updateTrainSeats(String trainNumber, String ticketClass, 
+                                    String journeyDate, int seatsToBook) {
+        if (!inventory.contains(trainNumber)) {
             return false;
         }
         
-        if (!train.bookSeats(seatsToBook)) {
-            System.out.println("Not enough seats available.");
-            return false;
+        return inventory.bookSeats(trainNumber, Train.classIndex(ticketClass), 
+                                   epochDayOf(journeyDate), seatsToBook);
+    }
+    
+    /**
+     * Release train seats of one class on a journey date (for cancellation)
+     */
+    public boolean releaseTrainSeats(String trainNumber, String ticketClass, 
+                                     String journeyDate, int seatsToRelease) {
+        return inventory.releaseSeats(trainNumber, Train.classIndex(ticketClass), 
+                                      epochDayOf(journeyDate), seatsToRelease);
+    }
+    
+    /**
+     * Release a cancelled ticket's seats, freeing exactly its seat numbers
+     */
+    public boolean releaseTrainSeats(String trainNumber, String ticketClass, String journeyDate,
+                                     int seatsToRelease, String seatNumbers) {
+        seatMap.release(trainNumber, ticketClass, journeyDate,
+                        seatMap.seatNumbersOf(trainNumber, ticketClass, journeyDate, seatNumbers));
+        return releaseTrainSeats(trainNumber, ticketClass, journeyDate, seatsToRelease);
+    }
+    
+    /**
+     * Update seat availability for one class on a journey date from stop fromStop
+     * to stop toStop; multi-stop trains take the seats on those segments only
+     * Prints nothing; see getAvailableSeats for how many seats were free
+     * @return false if the seats are not free
+     */
+    public boolean updateTrainSeats(Train train, String ticketClass, String journeyDate,
+                                    int fromStop, int toStop, int seatsToBook) {
+        String trainNumber = train.getTrainNumber();
+        if (train.getSegmentCount() == 1) {
+            return updateTrainSeats(trainNumber, ticketClass, journeyDate, seatsToBook);
         }
         
-        return FileUtil.updateInFile(FileUtil.TRAINS_FILE, 
-                                    trainNumber, train.toFileFormat());
+        int classSeats = inventory.getTotalSeats(trainNumber, Train.classIndex(ticketClass));
+        return segments.bookSeats(trainNumber, ticketClass, journeyDate, train.getSegmentCount(),
+                                  classSeats, fromStop, toStop, seatsToBook);
     }
     
     /**
-     * Release train seats (for cancellation)
+     * Seats of a class free on a journey date from stop fromStop to stop toStop
      */
-    public boolean releaseTrainSeats(String trainNumber, int seatsToRelease) {
-        Train train = getTrainByNumber(trainNumber);
-        
-        if (train == null) {
-            return false;
+    public int getAvailableSeats(Train train, String ticketClass, String journeyDate,
+                                 int fromStop, int toStop) {
+        String trainNumber = train.getTrainNumber();
+        int classIndex = Train.classIndex(ticketClass);
+        if (train.getSegmentCount() == 1) {
+            return Math.max(0, inventory.getAvailableSeats(trainNumber, classIndex, epochDayOf(journeyDate)));
+        }
+        return segments.getAvailableSeats(trainNumber, ticketClass, journeyDate, fromStop, toStop,
+                                          inventory.getTotalSeats(trainNumber, classIndex));
+    }
+    
+    /**
+     * Release seats taken from stop fromStop to stop toStop, freeing exactly their seat numbers
+     */
+    public boolean releaseTrainSeats(Train train, String ticketClass, String journeyDate,
+                                     int fromStop, int toStop, int seatsToRelease, String seatNumbers) {
+        String trainNumber = train.getTrainNumber();
+        if (train.getSegmentCount() == 1) {
+            return releaseTrainSeats(trainNumber, ticketClass, journeyDate, seatsToRelease, seatNumbers);
+        }
+        seatMap.release(trainNumber, ticketClass, journeyDate,
+                        seatMap.seatNumbersOf(trainNumber, ticketClass, journeyDate, seatNumbers),
+                        fromStop, toStop);
+        return segments.releaseSeats(trainNumber, ticketClass, journeyDate, fromStop, toStop, seatsToRelease);
+    }
+    
+    /**
+     * Assign seat numbers of a class on a journey date that are free from stop
+     * fromStop to stop toStop, for seats already taken from the inventory
+     * @return ';'-separated seat labels, or null if none could be assigned
+     */
+    public String assignSeats(Train train, String ticketClass, String journeyDate,
+                              int fromStop, int toStop, int seats) {
+        String trainNumber = train.getTrainNumber();
+        int classSeats = inventory.getTotalSeats(trainNumber, Train.classIndex(ticketClass));
+        int[] seatNumbers = seatMap.allocate(trainNumber, ticketClass, journeyDate, seats, classSeats,
+                                             train.getSegmentCount(), fromStop, toStop);
+        return seatNumbers == null ? null : 
+               seatMap.labelsOf(trainNumber, ticketClass, journeyDate, seatNumbers);
+    }
+    
+    /**
+     * Take seats and assign seat numbers for one booking of a batch, without
+     * saving the seat maps (saveSeats writes them for the whole batch)
+     * @return ';'-separated seat labels, or null if the seats are not free
+     */
+    public String reserveSeats(Train train, String ticketClass, String journeyDate,
+                               int fromStop, int toStop, int seats) {
+        String trainNumber = train.getTrainNumber();
+        int classIndex = Train.classIndex(ticketClass);
+        int classSeats = inventory.getTotalSeats(trainNumber, classIndex);
+        int segmentCount = train.getSegmentCount();
+        boolean taken = segmentCount == 1 ? 
+                inventory.bookSeats(trainNumber, classIndex, epochDayOf(journeyDate), seats) :
+                segments.bookSeats(trainNumber, ticketClass, journeyDate, segmentCount, classSeats,
+                                   fromStop, toStop, seats, false);
+        if (!taken) {
+            return null;
         }
         
-        train.releaseSeats(seatsToRelease);
-        
-        return FileUtil.updateInFile(FileUtil.TRAINS_FILE, 
-                                    trainNumber, train.toFileFormat());
+        int[] seatNumbers = seatMap.allocate(trainNumber, ticketClass, journeyDate, seats, classSeats,
+                                             segmentCount, fromStop, toStop, false);
+        if (seatNumbers == null) {
+            releaseTrainSeats(train, ticketClass, journeyDate, fromStop, toStop, seats, "");
+            return null;
+        }
+        return seatMap.labelsOf(trainNumber, ticketClass, journeyDate, seatNumbers);
+    }
+    
+    /**
+     * Save the seat maps (and segment trees) changed by reserveSeats, one write per file
+     * @param keys - SeatMap.keyOf of each train, class and date in the batch
+     */
+    public void saveSeats(Collection<String> keys) {
+        seatMap.saveAll(keys);
+        segments.saveAll(keys);
+    }
+    
+    /**
+     * Assign seat numbers of a class on a journey date for seats already taken
+     * from the inventory, adjacent in one coach when possible
+     * @return ';'-separated seat labels (e.g. "S1-5;S1-6"), or null if none could be assigned
+     */
+    public String assignSeats(String trainNumber, String ticketClass, String journeyDate, int seats) {
+        int classSeats = inventory.getTotalSeats(trainNumber, Train.classIndex(ticketClass));
+        int[] seatNumbers = seatMap.allocate(trainNumber, ticketClass, journeyDate, seats, classSeats);
+        return seatNumbers == null ? null : 
+               seatMap.labelsOf(trainNumber, ticketClass, journeyDate, seatNumbers);
     }
     
     /**
-     * Parse train from file line
+     * Parse train from file line, with seats available on a journey date
      */
-    private Train parseTrainFromLine(String line) {
+    private Train parseTrainFromLine(String line, String journeyDate) {
         try {
-            String[] parts = line.split(",");
-            if (parts.length >= 7) {
-                return new Train(
-                    parts[0].trim(),
-                    parts[1].trim(),
-                    parts[2].trim(),
-                    parts[3].trim(),
-                    Integer.parseInt(parts[4].trim()),
-                    Integer.parseInt(parts[5].trim()),
-                    Double.parseDouble(parts[6].trim())
+            CsvCursor fields = new CsvCursor(line);
+            if (fields.fieldCount() >= 7) {
+                Train train = new Train(
+                    fields.nextString(),
+                    fields.nextString(),
+                    fields.nextString(),
+                    fields.nextString(),
+                    fields.nextInt(),
+                    fields.nextInt(),
+                    fields.nextDouble()
                 );
+                if (fields.hasNext()) {
+                    String stops = fields.nextString();
+                    if (!stops.isEmpty()) {
+                        train.setIntermediateStops(Arrays.asList(stops.split(";")));
+                    }
+                }
+                if (fields.hasNext()) {
+                    List<Integer> minutes = InputValidator.parseMinutes(fields.nextString());
+                    if (minutes != null) {
+                        train.setRunningMinutes(minutes);
+                    }
+                }
+                applyInventory(train, epochDayOf(journeyDate));
+                train.setJourneyDate(journeyDate);
+                return train;
             }
         } catch (Exception e) {
             System.err.println("Error parsing train data: " + e.getMessage());
         }
         return null;
     }
+    
+    /**
+     * Copy of an indexed train with seats available on a journey date
+     * (the indexed train is shared by every search)
+     */
+    private Train copyOf(Train indexed, String journeyDate, long epochDay) {
+        Train train = new Train(indexed.getTrainNumber(), indexed.getSource(), indexed.getDestination(),
+                                indexed.getDepartureTime(), indexed.getTotalSeats(),
+                                indexed.getAvailableSeats(), indexed.getBaseFare());
+        train.setIntermediateStops(indexed.getIntermediateStops());
+        train.setRunningMinutes(indexed.getRunningMinutes());
+        applyInventory(train, epochDay);
+        train.setJourneyDate(journeyDate);
+        return train;
+    }
+    
+    /**
+     * Take seat counters of every class on a date from the inventory file
+     * (trains.txt may be stale); trains missing from the inventory are registered
+     * Reads only mapped counters, so search results carry class availability
+     * without touching any other file
+     */
+    private void applyInventory(Train train, long epochDay) {
+        String trainNumber = train.getTrainNumber();
+        if (!inventory.contains(trainNumber)) {
+            inventory.addTrain(trainNumber, train.getTotalSeats());
+        }
+        int available = 0;
+        for (int c = 0; c < Train.TICKET_CLASSES.length; c++) {
+            int classAvailable = inventory.getAvailableSeats(trainNumber, c, epochDay);
+            train.setClassSeats(Train.TICKET_CLASSES[c], inventory.getTotalSeats(trainNumber, c), 
+                                classAvailable);
+            available += classAvailable;
+        }
+        train.setAvailableSeats(available);
+    }
+    
+    /**
+     * Show the seats free on every segment from stop fromStop to stop toStop
+     * (in-memory segment trees; whole-route searches keep the mapped counters)
+     */
+    private void applySegments(Train train, String journeyDate, int fromStop, int toStop) {
+        if (train.getSegmentCount() == 1 || (fromStop == 0 && toStop == train.getSegmentCount())) {
+            return;
+        }
+        int available = 0;
+        for (int c = 0; c < Train.TICKET_CLASSES.length; c++) {
+            String ticketClass = Train.TICKET_CLASSES[c];
+            int classSeats = train.getClassTotalSeats(ticketClass);
+            int classAvailable = segments.getAvailableSeats(train.getTrainNumber(), ticketClass,
+                                                            journeyDate, fromStop, toStop, classSeats);
+            train.setClassSeats(ticketClass, classSeats, classAvailable);
+            available += classAvailable;
+        }
+        train.setAvailableSeats(available);
+    }
+    
+    private static long epochDayOf(String journeyDate) {
+        return LocalDate.parse(journeyDate.trim()).toEpochDay();
+    }
 }
\ No newline at end of file
@@ -4,12 +4,15 @@ import model.User;
 import util.FactoryUserCreator;
 import util.FileUtil;
 import util.InputValidator;
+import util.UserDirectory;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * UserService handles user-related business logic
  * Separates business logic from data access and presentation
+ * Lookups go through the in-memory UserDirectory instead of scanning users.txt
  */
 public class UserService {
     
@@ -22,21 +25,12 @@ public class UserService {
             return null;
         }
         
-        List<String> users = FileUtil.readFromFile(FileUtil.USERS_FILE);
+        User user = UserDirectory.getInstance().findByEmail(email);
         
-        for (String line : users) {
-            String[] parts = line.split(",");
-            if (parts.length >= 5) {
-                String storedEmail = parts[2].trim();
-                String storedPassword = parts[3].trim();
-                String storedType = parts[4].trim();
-                
-                if (storedEmail.equals(email) && 
-                    storedPassword.equals(password) && 
-                    storedType.equals(userType)) {
-                    return FactoryUserCreator.createUserFromFileData(line);
-                }
-            }
+        if (user != null && 
+            user.getPassword().equals(password) && 
+            user.getUserType().equals(userType)) {
+            return user;
         }
         
         return null;
@@ -64,18 +58,25 @@ public class UserService {
             return false;
         }
         
-        // Generate new user ID
-        String userId = FileUtil.generateNextId(FileUtil.USERS_FILE, 
-                                                userType.equals("Admin") ? "A" : "P");
-        
-        // Create user object
-        User user = FactoryUserCreator.createUser(userId, name, email, password, userType);
-        
-        if (user != null) {
-            // Save to file
-            FileUtil.writeToFile(FileUtil.USERS_FILE, user.toFileFormat(), true);
-            System.out.println("User registered successfully with ID: " + userId);
-            return true;
+        try {
+            // Generate new user ID
+            String userId = FileUtil.generateNextId(FileUtil.USERS_FILE, 
+                                                    userType.equals("Admin") ? "A" : "P");
+            
+            // Create user object
+            User user = FactoryUserCreator.createUser(userId, name, email, password, userType);
+            
+            if (user != null) {
+                // Save to directory and file (fails if the email was taken meanwhile)
+                if (!UserDirectory.getInstance().add(user)) {
+                    System.out.println("Email already registered.");
+                    return false;
+                }
+                System.out.println("User registered successfully with ID: " + userId);
+                return true;
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println("Error saving user: " + e.getMessage());
         }
         
         return false;
@@ -85,31 +86,14 @@ public class UserService {
      * Check if email already exists
      */
     public boolean emailExists(String email) {
-        List<String> users = FileUtil.readFromFile(FileUtil.USERS_FILE);
-        
-        for (String line : users) {
-            String[] parts = line.split(",");
-            if (parts.length >= 3 && parts[2].trim().equals(email)) {
-                return true;
-            }
-        }
-        
-        return false;
+        return UserDirectory.getInstance().emailExists(email);
     }
     
     /**
      * Get user by ID
      */
     public User getUserById(String userId) {
-        List<String> users = FileUtil.readFromFile(FileUtil.USERS_FILE);
-        
-        for (String line : users) {
-            if (line.startsWith(userId + ",")) {
-                return FactoryUserCreator.createUserFromFileData(line);
-            }
-        }
-        
-        return null;
+        return UserDirectory.getInstance().findById(userId);
     }
     
     /**
@@ -117,20 +101,22 @@ public class UserService {
      */
     public List<User> getAllUsers() {
         List<User> userList = new ArrayList<>();
-        List<String> users = FileUtil.readFromFile(FileUtil.USERS_FILE);
         
-        for (String line : users) {
+        FileUtil.forEachRecord(FileUtil.USERS_FILE, line -> {
             User user = FactoryUserCreator.createUserFromFileData(line);
             if (user != null) {
                 userList.add(user);
             }
-        }
+            return true;
+        });
         
         return userList;
     }
     
     /**
      * Update user password
+     * The new password is written to users.txt first, through a copy of the user,
+     * and only then set on the shared user, so a failed write leaves the old one
      */
     public boolean updatePassword(String userId, String newPassword) {
         if (!InputValidator.isValidPassword(newPassword)) {
@@ -139,8 +125,21 @@ public class UserService {
         
         User user = getUserById(userId);
         if (user != null) {
+            User updated = FactoryUserCreator.createUserFromFileData(user.toFileFormat());
+            if (updated == null) {
+                return false;
+            }
+            updated.setPassword(newPassword);
+            try {
+                if (!UserDirectory.getInstance().update(updated)) {
+                    return false;
+                }
+            } catch (UncheckedIOException e) {
+                System.err.println("Error saving password: " + e.getMessage());
+                return false;
+            }
             user.setPassword(newPassword);
-            return FileUtil.updateInFile(FileUtil.USERS_FILE, userId, user.toFileFormat());
+            return true;
         }
         
         return false;
@@ -0,0 +1,169 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background compactor for the data files
+ * Periodically checks each file's write-ahead log and, once it has grown past
+ * the configured threshold, compacts the file into a new snapshot on a daemon
+ * thread. Bookings keep being accepted while a compaction runs
+ * Demonstrates Singleton Design Pattern
+ */
+public class Compactor {
+
+    private static Compactor instance;
+
+    private final List<String> filenames = new ArrayList<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Compaction results for one data file
+     */
+    public static class Stats {
+        private int runs;
+        private long lastReclaimedBytes;
+        private long totalReclaimedBytes;
+        private long lastDurationMillis;
+        private long totalDurationMillis;
+
+        public synchronized int getRuns() {
+            return runs;
+        }
+
+        public synchronized long getLastReclaimedBytes() {
+            return lastReclaimedBytes;
+        }
+
+        public synchronized long getTotalReclaimedBytes() {
+            return totalReclaimedBytes;
+        }
+
+        public synchronized long getLastDurationMillis() {
+            return lastDurationMillis;
+        }
+
+        public synchronized long getTotalDurationMillis() {
+            return totalDurationMillis;
+        }
+
+        private synchronized void record(long reclaimedBytes, long durationMillis) {
+            runs++;
+            lastReclaimedBytes = reclaimedBytes;
+            totalReclaimedBytes += reclaimedBytes;
+            lastDurationMillis = durationMillis;
+            totalDurationMillis += durationMillis;
+        }
+    }
+
+    private Compactor() {
+        filenames.add(FileUtil.BOOKINGS_FILE);
+        filenames.add(FileUtil.TRAINS_FILE);
+        filenames.add(FileUtil.USERS_FILE);
+        filenames.add(FileUtil.SEATMAPS_FILE);
+        filenames.add(FileUtil.SEGMENTS_FILE);
+        for (String filename : filenames) {
+            stats.put(filename, new Stats());
+        }
+    }
+
+    /**
+     * Get the shared compactor
+     */
+    public static synchronized Compactor getInstance() {
+        if (instance == null) {
+            instance = new Compactor();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the background check on a daemon thread
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        int interval = SingletonConnection.getInstance().getCompactionIntervalSeconds();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the background check (a running compaction is allowed to finish)
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Compact every file whose log is larger than the threshold
+     */
+    public void compactIfNeeded() {
+        long threshold = SingletonConnection.getInstance().getCompactionLogThreshold();
+        for (String filename : filenames) {
+            try {
+                if (FileUtil.getStore(filename).getLogLength() >= threshold) {
+                    compact(filename);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Compaction error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compact one data file now
+     * @return bytes reclaimed, or -1 if compaction failed
+     */
+    public long compact(String filename) {
+        long start = System.nanoTime();
+        long reclaimed = FileUtil.getStore(filename).compact();
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (reclaimed >= 0) {
+            stats.computeIfAbsent(filename, k -> new Stats()).record(reclaimed, duration);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Get compaction results for a data file
+     */
+    public Stats getStats(String filename) {
+        return stats.computeIfAbsent(filename, k -> new Stats());
+    }
+
+    /**
+     * Display compaction results for all data files
+     */
+    public void displayStats() {
+        System.out.println("=== Storage Compaction ===");
+        for (String filename : filenames) {
+            Stats fileStats = getStats(filename);
+            System.out.println(filename);
+            RecordStore store = FileUtil.getStore(filename);
+            long[] commits = store.getCommitCounts();
+            System.out.println("  Pending log: " + store.getLogLength() + " bytes");
+            System.out.println("  Log syncs: " + commits[0] + " for " + commits[1] + " writes");
+            System.out.println("  Compactions: " + fileStats.getRuns());
+            System.out.println("  Last run: reclaimed " + fileStats.getLastReclaimedBytes() +
+                               " bytes in " + fileStats.getLastDurationMillis() + " ms");
+            System.out.println("  Total: reclaimed " + fileStats.getTotalReclaimedBytes() +
+                               " bytes in " + fileStats.getTotalDurationMillis() + " ms");
+        }
+        System.out.println("==========================");
+    }
+}
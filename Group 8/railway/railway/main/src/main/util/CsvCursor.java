@@ -0,0 +1,192 @@
+package util;
+
+/**
+ * Cursor over the comma-separated fields of one record line
+ * Numbers are parsed straight from the characters and fields are trimmed by
+ * moving the bounds, so only the String fields a caller keeps are allocated
+ * (no regex split, no temporary substrings)
+ */
+public class CsvCursor {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CharSequence line;
+    private int position;
+    private int fieldStart;
+    private int fieldEnd;
+
+    public CsvCursor(CharSequence line) {
+        this.line = line;
+    }
+
+    /**
+     * Start reading another line with this cursor
+     */
+    public CsvCursor reset(CharSequence line) {
+        this.line = line;
+        this.position = 0;
+        return this;
+    }
+
+    /**
+     * Number of fields in the line (commas + 1)
+     */
+    public int fieldCount() {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if there is another field to read
+     */
+    public boolean hasNext() {
+        return position <= line.length();
+    }
+
+    /**
+     * Read the next field as a trimmed String
+     */
+    public String nextString() {
+        advance();
+        return line.subSequence(fieldStart, fieldEnd).toString();
+    }
+
+    /**
+     * Skip the next field
+     */
+    public void skip() {
+        advance();
+    }
+
+    /**
+     * Read the next field and compare it with a value without allocating it
+     */
+    public boolean nextEquals(String value) {
+        advance();
+        if (fieldEnd - fieldStart != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (line.charAt(fieldStart + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the next field as an int
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public int nextInt() {
+        advance();
+        int i = fieldStart;
+        boolean negative = false;
+        if (i < fieldEnd && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == fieldEnd) {
+            throw invalidNumber();
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalidNumber();
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw invalidNumber();
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw invalidNumber();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read the next field as a double
+     * Plain decimals ("500.0", "-12.75") are converted exactly from the digits;
+     * anything else (exponents, very long values) falls back to Double.parseDouble
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double nextDouble() {
+        advance();
+        int i = fieldStart;
+        boolean negative = false;
+        if (i < fieldEnd && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for (; i < fieldEnd; i++) {
+            char c = line.charAt(i);
+            if (c == '.' && !point) {
+                point = true;
+            } else if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (point) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return slowDouble();
+                }
+            } else {
+                return slowDouble();
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return slowDouble();
+        }
+        // Both values are exact doubles, so one division rounds correctly
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Move to the next field and trim its bounds
+     */
+    private void advance() {
+        if (position > line.length()) {
+            throw new IllegalArgumentException("Missing field in record: " + line);
+        }
+        int end = position;
+        while (end < line.length() && line.charAt(end) != ',') {
+            end++;
+        }
+        int start = position;
+        position = end + 1;
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        fieldStart = start;
+        fieldEnd = end;
+    }
+
+    private double slowDouble() {
+        return Double.parseDouble(line.subSequence(fieldStart, fieldEnd).toString());
+    }
+
+    private NumberFormatException invalidNumber() {
+        return new NumberFormatException("For input string: \"" +
+                line.subSequence(fieldStart, fieldEnd) + "\"");
+    }
+}
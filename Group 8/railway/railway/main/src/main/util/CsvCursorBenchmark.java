@@ -0,0 +1,184 @@
+package util;
+
+import model.Ticket;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark of CsvCursor against the String.split parsing it replaced, on
+ * generated bookings.txt lines
+ * Two cases are timed: a field scan that only needs numbers (seats * fare of
+ * confirmed bookings) and a full Ticket parse. Each reports the median and best
+ * time per pass and the bytes allocated per pass (garbage left for the collector)
+ * Both parsers are first checked to give the same tickets on every line
+ * Run with: java util.CsvCursorBenchmark [lines] [passes]
+ */
+public class CsvCursorBenchmark {
+    private static final String[] CLASSES = {"1A", "2A", "3A", "SL"};
+    private static final String[] STATUSES = {"Confirmed", "Confirmed", "Confirmed", "Cancelled", "Waitlisted"};
+    private static final int WARMUP_PASSES = 5;
+
+    private static volatile double sink;
+
+    /**
+     * One way of handling every line, returning a value so the work is not optimized away
+     */
+    private interface Pass {
+        double run(List<String> lines);
+    }
+
+    public static void main(String[] args) {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        List<String> lines = generateLines(lineCount);
+
+        for (String line : lines) {
+            String bySplit = parseWithSplit(line).toFileFormat();
+            String byCursor = parseWithCursor(new CsvCursor(""), line).toFileFormat();
+            if (!bySplit.equals(byCursor)) {
+                System.out.println("Parsers disagree on: " + line);
+                System.exit(1);
+            }
+        }
+        System.out.println("Parsers agree on all " + lineCount + " lines.");
+
+        measure("field scan, split", lines, passes, CsvCursorBenchmark::scanWithSplit);
+        measure("field scan, cursor", lines, passes, CsvCursorBenchmark::scanWithCursor);
+        measure("Ticket parse, split", lines, passes, batch -> {
+            double seats = 0;
+            for (String line : batch) {
+                seats += parseWithSplit(line).getNumberOfSeats();
+            }
+            return seats;
+        });
+        measure("Ticket parse, cursor", lines, passes, batch -> {
+            CsvCursor fields = new CsvCursor("");
+            double seats = 0;
+            for (String line : batch) {
+                seats += parseWithCursor(fields, line).getNumberOfSeats();
+            }
+            return seats;
+        });
+    }
+
+    /**
+     * Run a pass after warming up and print its median and best time and allocation
+     */
+    private static void measure(String name, List<String> lines, int passes, Pass pass) {
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            sink += pass.run(lines);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] nanos = new long[passes];
+        long allocated = 0;
+        for (int i = 0; i < passes; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long started = System.nanoTime();
+            sink += pass.run(lines);
+            nanos[i] = System.nanoTime() - started;
+            allocated += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-21s median %7.1f ms, best %7.1f ms, %7.1f MB allocated per pass%n", name,
+                          nanos[passes / 2] / 1e6, nanos[0] / 1e6, allocated / (double) passes / (1 << 20));
+    }
+
+    private static double scanWithSplit(List<String> lines) {
+        double total = 0;
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            if (parts.length >= 8 && parts[6].trim().equals("Confirmed")) {
+                total += Integer.parseInt(parts[3].trim()) * Double.parseDouble(parts[5].trim());
+            }
+        }
+        return total;
+    }
+
+    private static double scanWithCursor(List<String> lines) {
+        CsvCursor fields = new CsvCursor("");
+        double total = 0;
+        for (String line : lines) {
+            fields.reset(line);
+            if (fields.fieldCount() >= 8) {
+                fields.skip();
+                fields.skip();
+                fields.skip();
+                int seats = fields.nextInt();
+                fields.skip();
+                double fare = fields.nextDouble();
+                if (fields.nextEquals("Confirmed")) {
+                    total += seats * fare;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The split-based ticket parser CsvCursor replaced
+     */
+    private static Ticket parseWithSplit(String line) {
+        String[] parts = line.split(",");
+        Ticket ticket = new Ticket(parts[0].trim(), parts[1].trim(), parts[2].trim(),
+                                   Integer.parseInt(parts[3].trim()), parts[4].trim(),
+                                   Double.parseDouble(parts[5].trim()), parts[6].trim(), parts[7].trim());
+        if (parts.length >= 9) {
+            ticket.setSeatNumbers(parts[8].trim());
+        }
+        if (parts.length >= 10) {
+            ticket.setJourneyDate(parts[9].trim());
+        }
+        if (parts.length >= 12) {
+            ticket.setJourney(parts[10].trim(), parts[11].trim());
+        }
+        return ticket;
+    }
+
+    /**
+     * The cursor-based ticket parser of BookingService (without the waitlist lookup),
+     * with one cursor reused for every line as BookingService's scans do
+     */
+    private static Ticket parseWithCursor(CsvCursor fields, String line) {
+        fields.reset(line);
+        int fieldCount = fields.fieldCount();
+        Ticket ticket = new Ticket(fields.nextString(), fields.nextString(), fields.nextString(),
+                                   fields.nextInt(), fields.nextString(), fields.nextDouble(),
+                                   fields.nextString(), fields.nextString());
+        if (fieldCount >= 9) {
+            ticket.setSeatNumbers(fields.nextString());
+        }
+        if (fieldCount >= 10) {
+            ticket.setJourneyDate(fields.nextString());
+        }
+        if (fieldCount >= 12) {
+            ticket.setJourney(fields.nextString(), fields.nextString());
+        }
+        return ticket;
+    }
+
+    /**
+     * Booking lines as written by Ticket.toFileFormat, with varied values
+     */
+    private static List<String> generateLines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int seats = 1 + i % 6;
+            String ticketClass = CLASSES[i % CLASSES.length];
+            Ticket ticket = new Ticket("B" + (i + 1), "U" + (i % 5000 + 1), String.valueOf(12000 + i % 300),
+                                       seats, ticketClass, seats * (150.0 + i % 97 * 12.5),
+                                       STATUSES[i % STATUSES.length], "2026-10-" + (10 + i % 7));
+            StringBuilder seatNumbers = new StringBuilder();
+            for (int s = 1; s <= seats; s++) {
+                seatNumbers.append(s > 1 ? ";" : "").append("S").append(1 + i % 9).append('-').append(s);
+            }
+            ticket.setSeatNumbers(seatNumbers.toString());
+            ticket.setJourneyDate("2026-10-" + (17 + i % 10));
+            ticket.setJourney(i % 3 == 0 ? "" : "Mumbai", i % 3 == 0 ? "" : "Delhi");
+            lines.add(ticket.toFileFormat());
+        }
+        return lines;
+    }
+}
@@ -38,10 +38,10 @@ public class FactoryUserCreator {
      */
     public static User createUserFromFileData(String fileData) {
         try {
-            String[] parts = fileData.split(",");
-            if (parts.length >= 5) {
-                return createUser(parts[0].trim(), parts[1].trim(), 
-                                parts[2].trim(), parts[3].trim(), parts[4].trim());
+            CsvCursor fields = new CsvCursor(fileData);
+            if (fields.fieldCount() >= 5) {
+                return createUser(fields.nextString(), fields.nextString(), 
+                                fields.nextString(), fields.nextString(), fields.nextString());
             }
         } catch (Exception e) {
             System.err.println("Error parsing user data: " + e.getMessage());
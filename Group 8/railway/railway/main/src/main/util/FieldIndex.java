@@ -0,0 +1,256 @@
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary index from one CSV field (e.g. the userId of a booking) to record identifiers
+ * Postings are kept in memory and appended to a file as "value,identifier" lines
+ * Postings are never rewritten, so callers re-check the field of the records they read
+ *
+ * Layout: header line "#snapshotLength,snapshotModified,logLength" (fixed width,
+ *         rewritten in place), then one "value,identifier" line per posting
+ * As in OffsetIndex, the header remembers which data the postings cover so a
+ * stale index can be detected
+ */
+public class FieldIndex {
+    private static final int HEADER_SIZE = 61;
+
+    private final String filename;
+    private final int field;
+    private final Map<String, Set<String>> postings = new HashMap<>();
+    private BufferedWriter writer;
+    private FileChannel headerChannel;
+    private long snapshotLength;
+    private long snapshotModified;
+    private long logLength;
+
+    public FieldIndex(String filename, int field) {
+        this.filename = filename;
+        this.field = field;
+    }
+
+    /**
+     * Get a field of a CSV line without splitting the whole line
+     * @return the field, or null if the line has fewer fields
+     */
+    public static String fieldOf(String line, int field) {
+        int start = 0;
+        for (int i = 0; i < field; i++) {
+            start = line.indexOf(',', start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int end = line.indexOf(',', start);
+        return (end < 0 ? line.substring(start) : line.substring(start, end)).trim();
+    }
+
+    /**
+     * Load postings from the index file
+     * @return false if the file is missing or has no valid header and the index must be rebuilt
+     */
+    public boolean load() {
+        File file = new File(filename);
+        if (!file.exists()) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || line.length() != HEADER_SIZE - 1 || line.charAt(0) != '#') {
+                return false;
+            }
+            String[] header = line.substring(1).split(",");
+            if (header.length != 3) {
+                return false;
+            }
+            snapshotLength = Long.parseLong(header[0]);
+            snapshotModified = Long.parseLong(header[1]);
+            logLength = Long.parseLong(header[2]);
+            while ((line = reader.readLine()) != null) {
+                int comma = line.lastIndexOf(',');
+                if (comma > 0) {
+                    postings.computeIfAbsent(line.substring(0, comma), k -> new LinkedHashSet<>())
+                            .add(line.substring(comma + 1));
+                }
+            }
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading index: " + e.getMessage());
+            postings.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Check that the postings cover exactly this snapshot and at most this much log
+     */
+    public boolean covers(long snapshotLength, long snapshotModified, long logLength) {
+        return this.snapshotLength == snapshotLength
+                && this.snapshotModified == snapshotModified
+                && this.logLength <= logLength;
+    }
+
+    /**
+     * Log length already reflected in the postings
+     */
+    public long getLogLength() {
+        return logLength;
+    }
+
+    /**
+     * Record which snapshot the postings were built from
+     */
+    public void setSnapshot(long snapshotLength, long snapshotModified) {
+        this.snapshotLength = snapshotLength;
+        this.snapshotModified = snapshotModified;
+        writeHeader();
+    }
+
+    /**
+     * Record how much of the log is reflected in the postings (call after flush())
+     */
+    public void setLogLength(long logLength) {
+        this.logLength = logLength;
+        writeHeader();
+    }
+
+    /**
+     * Drop all postings and start an index file that covers nothing yet
+     */
+    public void reset() {
+        close();
+        postings.clear();
+        snapshotLength = -1;
+        snapshotModified = -1;
+        logLength = 0;
+        try {
+            Files.deleteIfExists(Paths.get(filename));
+            Files.createFile(Paths.get(filename));
+            writeHeader();
+        } catch (IOException e) {
+            System.err.println("Error resetting index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Add the posting for a record line if it is not indexed yet
+     * Call flush() to make new postings durable
+     */
+    public void add(String line) {
+        String value = fieldOf(line, field);
+        if (value == null) {
+            return;
+        }
+        String identifier = RecordStore.keyOf(line);
+        if (!postings.computeIfAbsent(value, k -> new LinkedHashSet<>()).add(identifier)) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(filename, true), StandardCharsets.UTF_8));
+            }
+            writer.write(value + "," + identifier);
+            writer.write('\n');
+        } catch (IOException e) {
+            System.err.println("Error writing index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Identifiers of records with this field value, oldest first
+     * @param from - number of identifiers to skip
+     * @param limit - maximum number of identifiers to return
+     */
+    public List<String> get(String value, int from, int limit) {
+        List<String> result = new ArrayList<>();
+        Set<String> identifiers = postings.get(value);
+        if (identifiers == null) {
+            return result;
+        }
+        int position = 0;
+        for (String identifier : identifiers) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (position++ >= from) {
+                result.add(identifier);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of postings for a field value
+     */
+    public int count(String value) {
+        Set<String> identifiers = postings.get(value);
+        return identifiers == null ? 0 : identifiers.size();
+    }
+
+    public int getField() {
+        return field;
+    }
+
+    /**
+     * Write buffered postings to the index file
+     */
+    public void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing index: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Flush and close the index file
+     */
+    public void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing index: " + e.getMessage());
+            }
+            writer = null;
+        }
+        if (headerChannel != null) {
+            try {
+                headerChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing index: " + e.getMessage());
+            }
+            headerChannel = null;
+        }
+    }
+
+    /**
+     * Overwrite the header line in place
+     */
+    private void writeHeader() {
+        String header = String.format("#%019d,%019d,%019d\n", snapshotLength, snapshotModified, logLength);
+        try {
+            if (headerChannel == null) {
+                headerChannel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+            }
+            headerChannel.write(ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)), 0);
+        } catch (IOException e) {
+            System.err.println("Error writing index: " + e.getMessage());
+        }
+    }
+}
@@ -2,17 +2,27 @@ package util;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * FileUtil class for handling file operations
  * Provides methods to read, write, and manage data files
+ * Changes are appended to a write-ahead log by RecordStore instead of rewriting the file
  */
 public class FileUtil {
     private static final String DATA_DIR = "src/main/data/";
     public static final String USERS_FILE = DATA_DIR + "users.txt";
     public static final String TRAINS_FILE = DATA_DIR + "trains.txt";
     public static final String BOOKINGS_FILE = DATA_DIR + "bookings.txt";
+    public static final String TRAIN_INVENTORY_FILE = DATA_DIR + "trains.dat";
+    public static final String IDS_FILE = DATA_DIR + "ids.txt";
+    public static final String SEATMAPS_FILE = DATA_DIR + "seatmaps.txt";
+    public static final String SEGMENTS_FILE = DATA_DIR + "segments.txt";
+    public static final int BOOKING_USER_FIELD = 1;
+
+    private static final Map<String, RecordStore> stores = new HashMap<>();
 
     /**
      * Initialize data files if they don't exist
@@ -54,133 +64,152 @@ public class FileUtil {
     }
 
     /**
-     * Read all lines from a file
+     * Get the storage engine for a data file (opened and replayed on first use)
+     * Bookings grow without bound, so they are served from an on-disk index
+     * with a secondary index on userId
      */
-    public static List<String> readFromFile(String filename) {
-        List<String> lines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    lines.add(line);
-                }
+    public static synchronized RecordStore getStore(String filename) {
+        RecordStore store = stores.get(filename);
+        if (store == null) {
+            if (BOOKINGS_FILE.equals(filename)) {
+                store = new RecordStore(filename, true, BOOKING_USER_FIELD);
+            } else {
+                store = new RecordStore(filename);
             }
-        } catch (FileNotFoundException e) {
-            System.err.println("File not found: " + filename);
-        } catch (IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
+            stores.put(filename, store);
         }
-        return lines;
+        return store;
+    }
+
+    /**
+     * Read all lines from a file
+     * Prefer forEachRecord for files that can be large
+     */
+    public static List<String> readFromFile(String filename) {
+        return getStore(filename).getAll();
+    }
+
+    /**
+     * Stream over the lines of a file, stopping when the visitor returns false
+     * @return false if the visitor stopped early
+     */
+    public static boolean forEachRecord(String filename, RecordVisitor<String> visitor) {
+        return getStore(filename).forEach(visitor);
     }
 
     /**
      * Write a line to a file
      * @param append - if true, append to file; if false, overwrite
+     * @throws UncheckedIOException if the line could not be written
      */
     public static void writeToFile(String filename, String content, boolean append) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, append))) {
-            writer.write(content);
-            writer.newLine();
-        } catch (IOException e) {
-            System.err.println("Error writing to file: " + e.getMessage());
+        if (append) {
+            getStore(filename).put(content);
+        } else {
+            List<String> lines = new ArrayList<>();
+            lines.add(content);
+            getStore(filename).replaceAll(lines);
         }
     }
 
+    /**
+     * Append multiple lines to a file with one write
+     */
+    public static void appendAllToFile(String filename, List<String> lines) {
+        getStore(filename).putAll(lines);
+    }
+
     /**
      * Write multiple lines to a file (overwrite mode)
+     * @throws UncheckedIOException if the lines could not be written
      */
     public static void writeAllToFile(String filename, List<String> lines) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, false))) {
-            for (String line : lines) {
-                writer.write(line);
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.err.println("Error writing to file: " + e.getMessage());
-        }
+        getStore(filename).replaceAll(lines);
     }
 
     /**
      * Delete a line from file that matches the given identifier
      */
     public static boolean deleteFromFile(String filename, String identifier) {
-        List<String> lines = readFromFile(filename);
-        List<String> updatedLines = new ArrayList<>();
-        boolean found = false;
-
-        for (String line : lines) {
-            if (!line.startsWith(identifier + ",")) {
-                updatedLines.add(line);
-            } else {
-                found = true;
-            }
-        }
-
-        if (found) {
-            writeAllToFile(filename, updatedLines);
-            return true;
-        }
-        return false;
+        return getStore(filename).remove(identifier);
     }
 
     /**
      * Update a line in file
      */
     public static boolean updateInFile(String filename, String identifier, String newContent) {
-        List<String> lines = readFromFile(filename);
-        List<String> updatedLines = new ArrayList<>();
-        boolean found = false;
-
-        for (String line : lines) {
-            if (line.startsWith(identifier + ",")) {
-                updatedLines.add(newContent);
-                found = true;
-            } else {
-                updatedLines.add(line);
-            }
-        }
+        return getStore(filename).update(identifier, newContent);
+    }
 
-        if (found) {
-            writeAllToFile(filename, updatedLines);
-            return true;
-        }
-        return false;
+    /**
+     * Get the line of a record by its identifier
+     * @return the line, or null if there is no such record
+     */
+    public static String findInFile(String filename, String identifier) {
+        return getStore(filename).get(identifier);
+    }
+
+    /**
+     * Get records whose indexed field (e.g. userId of bookings) has the given value
+     * @param from - number of matching records to skip
+     * @param limit - maximum number of records to return
+     */
+    public static List<String> findByField(String filename, String value, int from, int limit) {
+        return getStore(filename).getByField(value, from, limit);
+    }
+
+    /**
+     * Count records whose indexed field has the given value
+     */
+    public static int countByField(String filename, String value) {
+        return getStore(filename).countByField(value);
     }
 
     /**
      * Check if a record exists in file
      */
     public static boolean existsInFile(String filename, String identifier) {
-        List<String> lines = readFromFile(filename);
-        for (String line : lines) {
-            if (line.startsWith(identifier + ",")) {
-                return true;
-            }
-        }
-        return false;
+        return getStore(filename).contains(identifier);
     }
 
     /**
      * Get next available ID for a given prefix
+     * IDs come from IdAllocator's leased blocks; the file is only scanned
+     * the first time a prefix is used
      */
     public static String generateNextId(String filename, String prefix) {
-        List<String> lines = readFromFile(filename);
-        int maxId = 0;
+        return IdAllocator.getInstance().nextId(filename, prefix);
+    }
+
+    /**
+     * Get several consecutive IDs for a given prefix (e.g. for a batch of bookings)
+     */
+    public static List<String> generateNextIds(String filename, String prefix, int count) {
+        return IdAllocator.getInstance().nextIds(filename, prefix, count);
+    }
 
-        for (String line : lines) {
-            String[] parts = line.split(",");
-            if (parts.length > 0 && parts[0].startsWith(prefix)) {
+    /**
+     * Find the highest numeric ID with a given prefix in a file
+     * @return the highest number, or 0 if there is none
+     */
+    public static long findMaxId(String filename, String prefix) {
+        long[] maxId = { 0 };
+
+        forEachRecord(filename, line -> {
+            String identifier = RecordStore.keyOf(line);
+            if (identifier.startsWith(prefix)) {
                 try {
-                    int id = Integer.parseInt(parts[0].substring(prefix.length()));
-                    if (id > maxId) {
-                        maxId = id;
+                    long id = Long.parseLong(identifier.substring(prefix.length()));
+                    if (id > maxId[0]) {
+                        maxId[0] = id;
                     }
                 } catch (NumberFormatException e) {
                     // Skip invalid IDs
                 }
             }
-        }
+            return true;
+        });
 
-        return prefix + String.format("%03d", maxId + 1);
+        return maxId[0];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group commit for a write-ahead log
+ * Each append takes a ticket; writers then wait until their ticket is durable.
+ * A single flusher thread waits up to the batching window for more appends,
+ * fsyncs once for every append made so far and releases all of those writers,
+ * so one fsync is shared by every booking in a burst
+ * Waiting uses Conditions rather than a monitor so writers on virtual threads
+ * do not hold on to their carrier threads while the fsync runs; taking a ticket
+ * and reading the counters take no lock, as they happen under the log's monitor
+ * (a virtual thread blocked on a lock there would pin its carrier)
+ * A failed fsync fails every append it covered for good: after such a failure the
+ * OS may have dropped those pages, so a later successful fsync proves nothing
+ * about them. The flusher backs off before it tries again for newer appends
+ */
+public class GroupCommit {
+
+    /**
+     * Makes everything appended so far durable (e.g. FileChannel.force)
+     */
+    public interface Syncer {
+        void sync() throws IOException;
+    }
+
+    private static final long FIRST_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    /**
+     * Tickets after from and up to to, covered by a failed fsync
+     */
+    private static class FailedRange {
+        private final long from;
+        private long to;
+        private final IOException cause;
+
+        private FailedRange(long from, long to, IOException cause) {
+            this.from = from;
+            this.to = to;
+            this.cause = cause;
+        }
+    }
+
+    private final String name;
+    private final Syncer syncer;
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition requestedChanged = lock.newCondition();
+    private final Condition durableChanged = lock.newCondition();
+    private final AtomicLong issued = new AtomicLong();
+    private long requested;
+    private long durable;
+    private volatile long syncs;
+    private long failedThrough;
+    private final List<FailedRange> failedRanges = new ArrayList<>();
+    private Thread flusher;
+    private boolean running = true;
+
+    /**
+     * @param windowMicros - how long the flusher waits for more appends before syncing
+     */
+    public GroupCommit(String name, Syncer syncer, long windowMicros) {
+        this.name = name;
+        this.syncer = syncer;
+        this.windowNanos = windowMicros * 1000;
+    }
+
+    /**
+     * Take the ticket for an append that was just written
+     * Must be called in append order (i.e. under the log's lock)
+     */
+    public long nextTicket() {
+        return issued.incrementAndGet();
+    }
+
+    /**
+     * Wait until the append with this ticket has been synced
+     * @throws IOException if the sync covering it failed (also after later syncs succeeded)
+     */
+    public void awaitDurable(long ticket) throws IOException {
+        lock.lock();
+        try {
+            if (flusher == null && running) {
+                flusher = new Thread(this::flushLoop, "group-commit-" + name);
+                flusher.setDaemon(true);
+                flusher.start();
+            }
+            if (ticket > requested) {
+                requested = ticket;
+                requestedChanged.signal();
+            }
+            while (durable < ticket && failedThrough < ticket && running) {
+                durableChanged.awaitUninterruptibly();
+            }
+            for (FailedRange range : failedRanges) {
+                if (ticket > range.from && ticket <= range.to) {
+                    throw range.cause;
+                }
+            }
+            if (durable < ticket) {
+                throw new IOException("Log closed before sync: " + name);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of fsyncs done so far (compare with tickets to see the batching)
+     */
+    public long getSyncCount() {
+        return syncs;
+    }
+
+    public long getTicketCount() {
+        return issued.get();
+    }
+
+    /**
+     * Stop the flusher after a last sync
+     */
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            requestedChanged.signal();
+            durableChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        long backoffMillis = 0;
+        while (true) {
+            lock.lock();
+            try {
+                while (requested <= Math.max(durable, failedThrough) && running) {
+                    try {
+                        requestedChanged.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running && requested <= Math.max(durable, failedThrough)) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // After a failure wait longer before each retry; otherwise this is
+            // the batching window that lets more writers join this sync
+            if (backoffMillis > 0) {
+                LockSupport.parkNanos(backoffMillis * 1_000_000);
+            } else if (windowNanos > 0) {
+                LockSupport.parkNanos(windowNanos);
+            }
+
+            long target = issued.get();
+            try {
+                syncer.sync();
+                if (backoffMillis > 0) {
+                    System.err.println("Log " + name + " is syncing again");
+                    backoffMillis = 0;
+                }
+                lock.lock();
+                try {
+                    durable = Math.max(durable, target);
+                    syncs++;
+                    durableChanged.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (IOException e) {
+                if (backoffMillis == 0) {
+                    System.err.println("Error syncing log " + name + ": " + e.getMessage());
+                    backoffMillis = FIRST_BACKOFF_MILLIS;
+                } else {
+                    backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+                }
+                lock.lock();
+                try {
+                    long from = Math.max(durable, failedThrough);
+                    FailedRange last = failedRanges.isEmpty() ? null : failedRanges.get(failedRanges.size() - 1);
+                    if (last != null && last.to == from) {
+                        last.to = target;
+                    } else {
+                        failedRanges.add(new FailedRange(from, target, e));
+                    }
+                    failedThrough = Math.max(failedThrough, target);
+                    durableChanged.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
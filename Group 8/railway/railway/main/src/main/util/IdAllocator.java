@@ -0,0 +1,179 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates record IDs ("B001", "P002", ...) without scanning data files
+ * Each prefix hands out numbers from a leased block with an atomic counter;
+ * only leasing the next block takes a lock and writes the new limit to ids.txt.
+ * After a restart numbering continues from the leased limit, so IDs stay
+ * unique (the unused rest of the last block is skipped)
+ * Demonstrates Singleton Design Pattern
+ */
+public class IdAllocator {
+
+    private static IdAllocator instance;
+
+    private final String filename;
+    private final int blockSize;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Counter and leased limit for one prefix
+     */
+    private static class Sequence {
+        final AtomicLong next;
+        volatile long limit;
+
+        Sequence(long next, long limit) {
+            this.next = new AtomicLong(next);
+            this.limit = limit;
+        }
+    }
+
+    private IdAllocator(String filename, int blockSize) {
+        this.filename = filename;
+        this.blockSize = blockSize;
+        load();
+    }
+
+    /**
+     * Get the shared allocator
+     */
+    public static synchronized IdAllocator getInstance() {
+        if (instance == null) {
+            instance = new IdAllocator(FileUtil.IDS_FILE,
+                                       SingletonConnection.getInstance().getIdBlockSize());
+        }
+        return instance;
+    }
+
+    /**
+     * Get the next ID for a prefix
+     * @throws UncheckedIOException if a new block had to be leased and could not be saved
+     * @param filename - data file holding IDs with this prefix, scanned once
+     *                   only if the prefix has never been allocated before
+     */
+    public String nextId(String filename, String prefix) {
+        Sequence sequence = sequences.get(prefix);
+        if (sequence == null) {
+            sequence = createSequence(filename, prefix);
+        }
+
+        long id = sequence.next.getAndIncrement();
+        if (id >= sequence.limit) {
+            synchronized (sequence) {
+                while (id >= sequence.limit) {
+                    long limit = sequence.limit + blockSize;
+                    save(prefix, limit);
+                    sequence.limit = limit;
+                }
+            }
+        }
+        return prefix + String.format("%03d", id);
+    }
+
+    /**
+     * Get count consecutive IDs for a prefix, leasing the blocks they need with one save
+     * @throws UncheckedIOException if the blocks could not be saved
+     */
+    public List<String> nextIds(String filename, String prefix, int count) {
+        Sequence sequence = sequences.get(prefix);
+        if (sequence == null) {
+            sequence = createSequence(filename, prefix);
+        }
+
+        long first = sequence.next.getAndAdd(count);
+        long last = first + count - 1;
+        if (last >= sequence.limit) {
+            synchronized (sequence) {
+                if (last >= sequence.limit) {
+                    long blocks = (last - sequence.limit) / blockSize + 1;
+                    long limit = sequence.limit + blocks * blockSize;
+                    save(prefix, limit);
+                    sequence.limit = limit;
+                }
+            }
+        }
+        List<String> ids = new ArrayList<>(count);
+        for (long id = first; id <= last; id++) {
+            ids.add(prefix + String.format("%03d", id));
+        }
+        return ids;
+    }
+
+    /**
+     * Start a sequence after the highest ID already in the data file
+     */
+    private synchronized Sequence createSequence(String dataFile, String prefix) {
+        Sequence sequence = sequences.get(prefix);
+        if (sequence == null) {
+            long start = FileUtil.findMaxId(dataFile, prefix) + 1;
+            sequence = new Sequence(start, start);
+            sequences.put(prefix, sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Read leased limits ("prefix,limit" lines); numbering resumes at each limit
+     */
+    private void load() {
+        Path path = Paths.get(filename);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(",");
+                if (parts.length == 2) {
+                    long limit = Long.parseLong(parts[1].trim());
+                    sequences.put(parts[0].trim(), new Sequence(limit, limit));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Error reading ID allocations: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Durably replace ids.txt with the current limits and a newly leased one
+     * The new limit is saved before any ID of the block is handed out
+     * @throws UncheckedIOException if ids.txt could not be written, so no ID is handed out
+     */
+    private synchronized void save(String leasedPrefix, long leasedLimit) {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Sequence> entry : sequences.entrySet()) {
+            long limit = entry.getKey().equals(leasedPrefix) ? leasedLimit : entry.getValue().limit;
+            content.append(entry.getKey()).append(',').append(limit).append('\n');
+        }
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error saving ID allocations: " + e.getMessage(), e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error saving ID allocations: " + e.getMessage(), e);
+        }
+    }
+}
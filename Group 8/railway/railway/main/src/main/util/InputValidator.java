@@ -1,5 +1,9 @@
 package util;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -60,6 +64,76 @@ public class InputValidator {
         return TIME_PATTERN.matcher(time).matches();
     }
     
+    /**
+     * Minute of the day of an HH:MM time (e.g. "18:30" is 1110)
+     * @return the minute, or -1 if the time is not valid
+     */
+    public static int toMinuteOfDay(String time) {
+        if (!isValidTime(time)) {
+            return -1;
+        }
+        int colon = time.indexOf(':');
+        return Integer.parseInt(time.substring(0, colon)) * 60 + Integer.parseInt(time.substring(colon + 1));
+    }
+    
+    /**
+     * Parse a departure window: "06:00-10:00", "after 18:00", "before 09:30", or blank for the whole day
+     * A window such as "22:00-02:00" runs past midnight
+     * @return the first and last minute of the day in the window, or null if it cannot be read
+     */
+    public static int[] parseTimeWindow(String text) {
+        String window = text == null ? "" : text.trim().toLowerCase();
+        if (window.isEmpty()) {
+            return new int[] {0, 24 * 60 - 1};
+        }
+        if (window.startsWith("after ")) {
+            int from = toMinuteOfDay(window.substring(6).trim());
+            return from < 0 ? null : new int[] {from, 24 * 60 - 1};
+        }
+        if (window.startsWith("before ")) {
+            int to = toMinuteOfDay(window.substring(7).trim());
+            return to < 0 ? null : new int[] {0, to};
+        }
+        String[] times = window.split("\\s*[-\u2013]\\s*");
+        if (times.length != 2) {
+            return null;
+        }
+        int from = toMinuteOfDay(times[0]);
+        int to = toMinuteOfDay(times[1]);
+        return from < 0 || to < 0 ? null : new int[] {from, to};
+    }
+    
+    /**
+     * Parse minutes separated by ';' (e.g. a timetable's "90;185;300")
+     * @return the numbers, or null if the text is blank or one of them is not a number
+     */
+    public static List<Integer> parseMinutes(String text) {
+        List<Integer> minutes = new ArrayList<>();
+        try {
+            for (String part : text.split(";")) {
+                minutes.add(Integer.parseInt(part.trim()));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return minutes;
+    }
+    
+    /**
+     * Validate date format (YYYY-MM-DD)
+     */
+    public static boolean isValidDate(String date) {
+        if (date == null || date.trim().isEmpty()) {
+            return false;
+        }
+        try {
+            LocalDate.parse(date.trim());
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+    
     /**
      * Validate positive integer
      */
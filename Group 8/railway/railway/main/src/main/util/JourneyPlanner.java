@@ -0,0 +1,397 @@
+package util;
+
+import model.Journey;
+import model.Train;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Journey planner over the train timetable, using the Connection Scan Algorithm
+ * Every segment of every train is a connection (station to next station, departure,
+ * arrival), kept in one array sorted by departure. A query scans the array once from
+ * the requested time: a connection can be taken if its train was already boarded, or
+ * if the passenger is at its station in time (plus the minimum transfer time when
+ * changing trains). Arrivals are kept per number of trains used, so the same scan
+ * finds the earliest arrival and every journey with fewer changes
+ * Trains run daily, so the scan walks the array once per day of the search window
+ * Adding, updating or deleting a train merges its connections into (or filters them
+ * out of) a new array in linear time; queries keep reading the previous array
+ * Demonstrates Singleton Design Pattern
+ */
+public class JourneyPlanner {
+
+    private static JourneyPlanner instance;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int segmentMinutes;
+    private final int transferMinutes;
+    private final int searchDays;
+    private final int maxTrains;
+    private final Map<String, Integer> stationIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> tripIds = new ConcurrentHashMap<>();
+    private volatile Timetable timetable;
+
+    /**
+     * Connections sorted by departure, as parallel arrays; times are minutes after
+     * midnight of the day the train leaves its source. Never changed once published
+     */
+    private static class Timetable {
+        final int[] departure;
+        final int[] arrival;
+        final int[] fromStation;
+        final int[] toStation;
+        final int[] trip;
+        final int[] fromStop;
+        final Train[] trains;     // by trip id, null once deleted
+        final int stationCount;
+        final int runDays;        // most calendar days one run of a train spans
+
+        Timetable(int size, Train[] trains, int stationCount, int runDays) {
+            this.departure = new int[size];
+            this.arrival = new int[size];
+            this.fromStation = new int[size];
+            this.toStation = new int[size];
+            this.trip = new int[size];
+            this.fromStop = new int[size];
+            this.trains = trains;
+            this.stationCount = stationCount;
+            this.runDays = runDays;
+        }
+
+        int size() {
+            return departure.length;
+        }
+
+        void copy(int to, Timetable source, int from) {
+            departure[to] = source.departure[from];
+            arrival[to] = source.arrival[from];
+            fromStation[to] = source.fromStation[from];
+            toStation[to] = source.toStation[from];
+            trip[to] = source.trip[from];
+            fromStop[to] = source.fromStop[from];
+        }
+    }
+
+    private JourneyPlanner(Collection<Train> trains) {
+        SingletonConnection config = SingletonConnection.getInstance();
+        this.segmentMinutes = config.getDefaultSegmentMinutes();
+        this.transferMinutes = config.getMinTransferMinutes();
+        this.searchDays = config.getJourneySearchDays();
+        this.maxTrains = config.getMaxJourneyTrains();
+
+        Train[] trips = trains.toArray(new Train[0]);
+        List<Timetable> parts = new ArrayList<>();
+        int size = 0;
+        for (int i = 0; i < trips.length; i++) {
+            tripIds.put(trips[i].getTrainNumber(), i);
+            Timetable part = connectionsOf(trips[i], i);
+            parts.add(part);
+            size += part.size();
+        }
+        Timetable all = new Timetable(size, trips, stationIds.size(), 1);
+        int next = 0;
+        for (Timetable part : parts) {
+            for (int i = 0; i < part.size(); i++) {
+                all.copy(next++, part, i);
+            }
+        }
+        timetable = sorted(all);
+    }
+
+    /**
+     * Get the shared planner, built from the route index's trains on first use
+     */
+    public static synchronized JourneyPlanner getInstance() {
+        if (instance == null) {
+            instance = new JourneyPlanner(RouteIndex.getInstance().getTrains());
+        }
+        return instance;
+    }
+
+    /**
+     * Add a train's connections, or replace them after the train was updated
+     */
+    public synchronized void put(Train train) {
+        Timetable current = timetable;
+        Integer existing = tripIds.get(train.getTrainNumber());
+        int trip = existing != null ? existing : current.trains.length;
+        Train[] trains = Arrays.copyOf(current.trains, Math.max(current.trains.length, trip + 1));
+        trains[trip] = train;
+        Timetable added = sorted(connectionsOf(train, trip));
+        timetable = merge(current, existing != null ? trip : -1, added, trains);
+        tripIds.put(train.getTrainNumber(), trip);
+    }
+
+    /**
+     * Drop a deleted train's connections
+     */
+    public synchronized void remove(String trainNumber) {
+        Integer trip = tripIds.remove(trainNumber);
+        if (trip == null) {
+            return;
+        }
+        Timetable current = timetable;
+        Train[] trains = current.trains.clone();
+        trains[trip] = null;
+        timetable = merge(current, trip, new Timetable(0, trains, 0, 1), trains);
+    }
+
+    /**
+     * Number of connections in the timetable
+     */
+    public int size() {
+        return timetable.size();
+    }
+
+    /**
+     * Journeys from source to destination leaving at or after a minute of a date,
+     * each arriving earlier than the one before it but using more trains: the first
+     * has the fewest changes, the last arrives earliest
+     * Runs of trains that left their source before today are not used
+     */
+    public List<Journey> plan(String source, String destination, LocalDate date, int fromMinute) {
+        List<Journey> journeys = new ArrayList<>();
+        Timetable t = timetable;
+        Integer origin = source == null ? null : stationIds.get(fold(source));
+        Integer target = destination == null ? null : stationIds.get(fold(destination));
+        if (origin == null || target == null || origin.equals(target) ||
+                origin >= t.stationCount || target >= t.stationCount) {
+            return journeys;
+        }
+
+        // One cursor per daily run: runs that left up to runDays - 1 days earlier may still be on the way
+        int firstRun = 1 - t.runDays;
+        int runs = searchDays - firstRun;
+        int firstBookable = (int) Math.max(firstRun, LocalDate.now().toEpochDay() - date.toEpochDay());
+        int[] cursor = new int[runs];
+        for (int r = 0; r < runs; r++) {
+            int runDay = firstRun + r;
+            cursor[r] = runDay < firstBookable ? t.size() :
+                        firstDepartureAtOrAfter(t, fromMinute - runDay * MINUTES_PER_DAY);
+        }
+
+        // arrival[n][s]: earliest arrival at s using at most n trains (n = 0 only at the origin)
+        int levels = maxTrains + 1;
+        int[][] arrival = new int[levels][t.stationCount];
+        int[][] inConnection = new int[levels][t.stationCount];
+        int[][] inRun = new int[levels][t.stationCount];
+        int[][] inLevel = new int[levels][t.stationCount];
+        for (int[] row : arrival) {
+            Arrays.fill(row, INFINITY);
+        }
+        arrival[0][origin] = fromMinute;
+        // tripLevel: fewest trains with which a run of a train is reached, and where it was boarded then
+        int tripRuns = t.trains.length * runs;
+        int[] tripLevel = new int[tripRuns];
+        Arrays.fill(tripLevel, levels);
+        int[][] boardedAt = new int[levels][tripRuns];
+        int horizon = searchDays * MINUTES_PER_DAY;
+
+        while (true) {
+            int run = -1;
+            int departure = INFINITY;
+            for (int r = 0; r < runs; r++) {
+                if (cursor[r] < t.size()) {
+                    int candidate = t.departure[cursor[r]] + (firstRun + r) * MINUTES_PER_DAY;
+                    if (candidate < departure) {
+                        departure = candidate;
+                        run = r;
+                    }
+                }
+            }
+            // Later connections cannot beat the direct arrival (or the window has ended)
+            if (run < 0 || departure >= horizon || departure > arrival[1][target]) {
+                break;
+            }
+            int c = cursor[run]++;
+            int tripRun = t.trip[c] * runs + run;
+            int from = t.fromStation[c];
+
+            // Board here if that takes fewer trains than reaching this run of the train did
+            int level = tripLevel[tripRun];
+            for (int n = 0; n + 1 < level; n++) {
+                int ready = arrival[n][from];
+                if (n > 0 && ready != INFINITY) {
+                    ready += transferMinutes;
+                }
+                if (ready <= departure) {
+                    level = n + 1;
+                    tripLevel[tripRun] = level;
+                    boardedAt[level][tripRun] = c;
+                    break;
+                }
+            }
+            if (level >= levels) {
+                continue;
+            }
+
+            int to = t.toStation[c];
+            int arrivalTime = t.arrival[c] + (firstRun + run) * MINUTES_PER_DAY;
+            for (int n = level; n < levels && arrivalTime < arrival[n][to]; n++) {
+                arrival[n][to] = arrivalTime;
+                inConnection[n][to] = c;
+                inRun[n][to] = run;
+                inLevel[n][to] = level;
+            }
+        }
+
+        int previous = INFINITY;
+        for (int n = 1; n < levels; n++) {
+            if (arrival[n][target] < previous) {
+                journeys.add(journeyTo(t, target, n, date, firstRun, runs, inConnection, inRun, inLevel, boardedAt));
+                previous = arrival[n][target];
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * Journey with the earliest arrival, or null if there is none in the search window
+     */
+    public Journey earliestArrival(String source, String destination, LocalDate date, int fromMinute) {
+        List<Journey> journeys = plan(source, destination, date, fromMinute);
+        return journeys.isEmpty() ? null : journeys.get(journeys.size() - 1);
+    }
+
+    /**
+     * Journey with the fewest changes (arriving earliest among those), or null if there is none
+     */
+    public Journey fewestTransfers(String source, String destination, LocalDate date, int fromMinute) {
+        List<Journey> journeys = plan(source, destination, date, fromMinute);
+        return journeys.isEmpty() ? null : journeys.get(0);
+    }
+
+    /**
+     * Follow the connections back from the target to the origin, one train at a time
+     */
+    private Journey journeyTo(Timetable t, int target, int trains, LocalDate date, int firstRun, int runs,
+                              int[][] inConnection, int[][] inRun, int[][] inLevel, int[][] boardedAt) {
+        List<Journey.Leg> legs = new ArrayList<>();
+        int station = target;
+        int level = trains;
+        while (level > 0) {
+            int last = inConnection[level][station];
+            int run = inRun[level][station];
+            int tripLevel = inLevel[level][station];
+            int first = boardedAt[tripLevel][t.trip[last] * runs + run];
+            Train train = t.trains[t.trip[last]];
+            int runDay = firstRun + run;
+            List<String> stops = train.getStops();
+            legs.add(0, new Journey.Leg(train.getTrainNumber(), stops.get(t.fromStop[first]),
+                                        stops.get(t.fromStop[last] + 1), date.plusDays(runDay).toString(),
+                                        date.atStartOfDay().plusMinutes(t.departure[first] + runDay * MINUTES_PER_DAY),
+                                        date.atStartOfDay().plusMinutes(t.arrival[last] + runDay * MINUTES_PER_DAY)));
+            station = t.fromStation[first];
+            level = tripLevel - 1;
+        }
+        return new Journey(legs);
+    }
+
+    /**
+     * A train's connections, one per segment; none if its departure time is invalid
+     */
+    private Timetable connectionsOf(Train train, int trip) {
+        int start = InputValidator.toMinuteOfDay(train.getDepartureTime());
+        if (start < 0) {
+            return new Timetable(0, null, 0, 1);
+        }
+        List<String> stops = train.getStops();
+        int segments = stops.size() - 1;
+        int end = start + train.minutesToStop(segments, segmentMinutes);
+        Timetable connections = new Timetable(segments, null, 0, end / MINUTES_PER_DAY + 1);
+        for (int i = 0; i < segments; i++) {
+            connections.departure[i] = start + train.minutesToStop(i, segmentMinutes);
+            connections.arrival[i] = start + train.minutesToStop(i + 1, segmentMinutes);
+            connections.fromStation[i] = stationId(stops.get(i));
+            connections.toStation[i] = stationId(stops.get(i + 1));
+            connections.trip[i] = trip;
+            connections.fromStop[i] = i;
+        }
+        return connections;
+    }
+
+    /**
+     * Connections ordered by departure (stable, so a train's segments stay in route order)
+     */
+    private Timetable sorted(Timetable connections) {
+        int size = connections.size();
+        long[] keys = new long[size];
+        int runDays = connections.runDays;
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) connections.departure[i] << 32) | i;
+            runDays = Math.max(runDays, connections.arrival[i] / MINUTES_PER_DAY + 1);
+        }
+        Arrays.sort(keys);
+        Timetable sorted = new Timetable(size, connections.trains, stationIds.size(), runDays);
+        for (int i = 0; i < size; i++) {
+            sorted.copy(i, connections, (int) keys[i]);
+        }
+        return sorted;
+    }
+
+    /**
+     * New timetable with a trip's old connections left out and sorted new ones merged in
+     */
+    private Timetable merge(Timetable current, int droppedTrip, Timetable added, Train[] trains) {
+        int kept = 0;
+        for (int i = 0; i < current.size(); i++) {
+            if (current.trip[i] != droppedTrip) {
+                kept++;
+            }
+        }
+        Timetable merged = new Timetable(kept + added.size(), trains, stationIds.size(),
+                                         Math.max(current.runDays, added.runDays));
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.size(); k++) {
+            while (i < current.size() && current.trip[i] == droppedTrip) {
+                i++;
+            }
+            if (j < added.size() && (i >= current.size() || added.departure[j] < current.departure[i])) {
+                merged.copy(k, added, j++);
+            } else {
+                merged.copy(k, current, i++);
+            }
+        }
+        return merged;
+    }
+
+    private static int firstDepartureAtOrAfter(Timetable t, int minute) {
+        int low = 0;
+        int high = t.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (t.departure[middle] < minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Id of a station, given out on first sight (only under the planner's lock)
+     */
+    private int stationId(String station) {
+        String key = fold(station);
+        Integer id = stationIds.get(key);
+        if (id == null) {
+            id = stationIds.size();
+            stationIds.put(key, id);
+        }
+        return id;
+    }
+
+    private static String fold(String station) {
+        return station.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,290 @@
+package util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk hash index from record identifier to file location
+ * Open addressing with linear probing over a memory-mapped slot table,
+ * so a lookup is one probe sequence in the mapping and no file scan
+ *
+ * Layout: header [magic, slotCount, usedSlots, reserved,
+ *                 snapshotLength, snapshotModified, logLength]
+ *         slot   [key (24 bytes, zero padded), location]
+ * The header remembers which data it covers so a stale index can be detected
+ */
+public class OffsetIndex {
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+    public static final int MAX_KEY_LENGTH = 24;
+
+    private static final int MAGIC = 0x4F494458; // "OIDX"
+    private static final int HEADER_SIZE = 48;
+    private static final int SLOT_SIZE = 32;
+    private static final int LOCATION_OFFSET = 24;
+    private static final int MIN_SLOTS = 1024;
+    private static final double MAX_LOAD = 0.6;
+
+    private final String filename;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int slotCount;
+    private int usedSlots;
+
+    private OffsetIndex(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Open an existing index file
+     * @return null if the file is missing or not a valid index
+     */
+    public static OffsetIndex open(String filename) {
+        if (!Files.exists(Paths.get(filename))) {
+            return null;
+        }
+        OffsetIndex index = new OffsetIndex(filename);
+        try {
+            index.channel = FileChannel.open(Paths.get(filename),
+                                             StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (index.channel.size() < HEADER_SIZE) {
+                index.close();
+                return null;
+            }
+            index.buffer = index.channel.map(FileChannel.MapMode.READ_WRITE, 0, index.channel.size());
+            index.slotCount = index.buffer.getInt(4);
+            index.usedSlots = index.buffer.getInt(8);
+            if (index.buffer.getInt(0) != MAGIC || Integer.bitCount(index.slotCount) != 1
+                    || index.channel.size() != HEADER_SIZE + (long) index.slotCount * SLOT_SIZE) {
+                index.close();
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            System.err.println("Error opening index: " + e.getMessage());
+            index.close();
+            return null;
+        }
+    }
+
+    /**
+     * Create an empty index file, replacing any existing one
+     */
+    public static OffsetIndex create(String filename, int expectedEntries) {
+        int slots = MIN_SLOTS;
+        while (slots * MAX_LOAD < expectedEntries) {
+            slots <<= 1;
+        }
+        OffsetIndex index = new OffsetIndex(filename);
+        try {
+            Files.deleteIfExists(Paths.get(filename));
+            index.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE_NEW,
+                                             StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index.buffer = index.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                             HEADER_SIZE + (long) slots * SLOT_SIZE);
+            index.slotCount = slots;
+            index.buffer.putInt(0, MAGIC);
+            index.buffer.putInt(4, slots);
+            index.buffer.putInt(8, 0);
+            return index;
+        } catch (IOException e) {
+            throw new IllegalStateException("Error creating index: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check that the index covers exactly this snapshot and at most this much log
+     */
+    public boolean covers(long snapshotLength, long snapshotModified, long logLength) {
+        return buffer.getLong(16) == snapshotLength
+                && buffer.getLong(24) == snapshotModified
+                && buffer.getLong(32) <= logLength;
+    }
+
+    /**
+     * Log length already reflected in the index
+     */
+    public long getLogLength() {
+        return buffer.getLong(32);
+    }
+
+    /**
+     * Record which snapshot the index was built from
+     */
+    public void setSnapshot(long snapshotLength, long snapshotModified) {
+        buffer.putLong(16, snapshotLength);
+        buffer.putLong(24, snapshotModified);
+    }
+
+    /**
+     * Record how much of the log is reflected in the index
+     */
+    public void setLogLength(long logLength) {
+        buffer.putLong(32, logLength);
+    }
+
+    /**
+     * Get the location stored for a key
+     * @return NOT_FOUND if the key is absent or removed
+     */
+    public long get(String key) {
+        byte[] raw = encode(key);
+        int slot = findSlot(raw, hash(key));
+        return slot < 0 ? NOT_FOUND : buffer.getLong(offsetOf(slot) + LOCATION_OFFSET);
+    }
+
+    /**
+     * Insert or replace the location of a key
+     */
+    public void put(String key, long location) {
+        byte[] raw = encode(key);
+        int hash = hash(key);
+        int slot = findSlot(raw, hash);
+        if (slot >= 0) {
+            buffer.putLong(offsetOf(slot) + LOCATION_OFFSET, location);
+            return;
+        }
+        if (usedSlots + 1 > slotCount * MAX_LOAD) {
+            grow();
+        }
+        slot = hash & (slotCount - 1);
+        while (buffer.get(offsetOf(slot)) != 0) {
+            slot = (slot + 1) & (slotCount - 1);
+        }
+        buffer.put(offsetOf(slot), raw);
+        buffer.putLong(offsetOf(slot) + LOCATION_OFFSET, location);
+        usedSlots++;
+        buffer.putInt(8, usedSlots);
+    }
+
+    /**
+     * Mark a key as removed (the slot stays occupied to keep probe chains intact)
+     */
+    public void remove(String key) {
+        byte[] raw = encode(key);
+        int slot = findSlot(raw, hash(key));
+        if (slot >= 0) {
+            buffer.putLong(offsetOf(slot) + LOCATION_OFFSET, NOT_FOUND);
+        }
+    }
+
+    /**
+     * Unmap and close the index file
+     */
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing index: " + e.getMessage());
+        }
+        channel = null;
+        buffer = null;
+    }
+
+    /**
+     * Find the slot holding a key
+     * @return slot number, or -1 if the key is not in the table
+     */
+    private int findSlot(byte[] raw, int hash) {
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        for (int probes = 0; probes < slotCount; probes++) {
+            int offset = offsetOf(slot);
+            if (buffer.get(offset) == 0) {
+                return -1;
+            }
+            if (keyEquals(offset, raw)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int offset, byte[] raw) {
+        for (int i = 0; i < MAX_KEY_LENGTH; i++) {
+            if (buffer.get(offset + i) != raw[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Double the slot table in place, dropping removed keys
+     */
+    private void grow() {
+        try {
+            MappedByteBuffer old = buffer;
+            int oldCount = slotCount;
+            slotCount = oldCount * 2;
+            usedSlots = 0;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                 HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+
+            byte[][] keys = new byte[oldCount][];
+            long[] locations = new long[oldCount];
+            for (int slot = 0; slot < oldCount; slot++) {
+                int offset = offsetOf(slot);
+                if (old.get(offset) != 0) {
+                    keys[slot] = new byte[MAX_KEY_LENGTH];
+                    old.get(offset, keys[slot]);
+                    locations[slot] = old.getLong(offset + LOCATION_OFFSET);
+                }
+            }
+            for (int i = HEADER_SIZE; i < HEADER_SIZE + (long) slotCount * SLOT_SIZE; i += SLOT_SIZE) {
+                buffer.put(i, (byte) 0);
+            }
+
+            int mask = slotCount - 1;
+            for (int i = 0; i < oldCount; i++) {
+                if (keys[i] == null || locations[i] == NOT_FOUND) {
+                    continue;
+                }
+                int length = 0;
+                while (length < MAX_KEY_LENGTH && keys[i][length] != 0) {
+                    length++;
+                }
+                int slot = hash(new String(keys[i], 0, length, StandardCharsets.UTF_8)) & mask;
+                while (buffer.get(offsetOf(slot)) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buffer.put(offsetOf(slot), keys[i]);
+                buffer.putLong(offsetOf(slot) + LOCATION_OFFSET, locations[i]);
+                usedSlots++;
+            }
+            buffer.putInt(4, slotCount);
+            buffer.putInt(8, usedSlots);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error growing index: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Key bytes zero padded to the slot key width
+     */
+    private static byte[] encode(String key) {
+        byte[] raw = key.getBytes(StandardCharsets.UTF_8);
+        if (raw.length == 0 || raw.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key cannot be indexed: " + key);
+        }
+        byte[] padded = new byte[MAX_KEY_LENGTH];
+        System.arraycopy(raw, 0, padded, 0, raw.length);
+        return padded;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+}
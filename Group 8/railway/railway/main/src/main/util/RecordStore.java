@@ -0,0 +1,994 @@
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * RecordStore is the storage engine behind FileUtil for one data file
+ * The data file is a snapshot, every change after it is appended to a
+ * write-ahead log (data file + ".wal") which is replayed on startup
+ *
+ * Small files keep their current records in memory. Indexed files (bookings)
+ * only keep an on-disk OffsetIndex (data file + ".idx") that maps each
+ * identifier to the position of its latest version, and read records by position
+ * An indexed file can also have a FieldIndex on one field (data file + ".field<N>.idx")
+ *
+ * Writers return once their log record is fsynced. Syncs go through a GroupCommit,
+ * so concurrent writers share one fsync instead of paying one each
+ * A write that cannot be appended or synced throws UncheckedIOException; a failed
+ * append changes nothing, so callers can undo their own changes and report it
+ */
+public class RecordStore {
+    private static final String WAL_SUFFIX = ".wal";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DEL";
+    private static final String GENERATION = "GEN";
+
+    private final String filename;
+    private final String walFilename;
+    private final String indexFilename;
+    private final boolean indexed;
+    private final Map<String, String> records = new LinkedHashMap<>();
+    private OffsetIndex index;
+    private FieldIndex fieldIndex;
+    private FileChannel snapshotChannel;
+    private volatile FileChannel walChannel;
+    private long walLength;
+    private final Object compactionLock = new Object();
+    private final GroupCommit commit;
+
+    /**
+     * Handler for records read from a file
+     */
+    private interface LineHandler {
+        /**
+         * @return false to stop reading
+         */
+        boolean handle(String line, long offset);
+    }
+
+    /**
+     * Create a store that keeps all records in memory
+     */
+    public RecordStore(String filename) {
+        this(filename, false, -1);
+    }
+
+    /**
+     * Create a store
+     * @param indexed - serve records from an on-disk offset index instead of memory
+     * @param indexedField - field to keep a secondary index on (indexed stores only), or -1
+     */
+    public RecordStore(String filename, boolean indexed, int indexedField) {
+        this.filename = filename;
+        this.walFilename = filename + WAL_SUFFIX;
+        this.indexFilename = filename + INDEX_SUFFIX;
+        this.indexed = indexed;
+        this.commit = new GroupCommit(Paths.get(filename).getFileName().toString(), this::forceLog,
+                SingletonConnection.getInstance().getGroupCommitWindowMicros());
+        if (indexed && indexedField >= 0) {
+            this.fieldIndex = new FieldIndex(filename + ".field" + indexedField + INDEX_SUFFIX,
+                                             indexedField);
+        }
+        load();
+    }
+
+    /**
+     * Record key is the identifier before the first comma
+     */
+    public static String keyOf(String line) {
+        int comma = line.indexOf(',');
+        return comma < 0 ? line.trim() : line.substring(0, comma);
+    }
+
+    /**
+     * Get current record for an identifier
+     * For indexed files this is one index probe plus one positioned read
+     */
+    public synchronized String get(String identifier) {
+        if (!indexed) {
+            return records.get(identifier);
+        }
+        long location = index.get(identifier);
+        if (location == OffsetIndex.NOT_FOUND) {
+            return null;
+        }
+        if (location >= 0) {
+            return readLineAt(snapshotChannel(), location);
+        }
+        return payloadOf(readLineAt(walChannel, -location - 1));
+    }
+
+    /**
+     * Check if a record exists
+     */
+    public synchronized boolean contains(String identifier) {
+        if (!indexed) {
+            return records.containsKey(identifier);
+        }
+        return index.get(identifier) != OffsetIndex.NOT_FOUND;
+    }
+
+    /**
+     * Get all current records
+     */
+    public List<String> getAll() {
+        List<String> lines = new ArrayList<>();
+        forEachLive((line, offset) -> lines.add(line));
+        return lines;
+    }
+
+    /**
+     * Stream over all current records without collecting them
+     * Indexed files are read from disk as they go, so memory stays flat.
+     * The store lock is only held to note where the log ends and to check each
+     * record, so puts and reads go on during the scan
+     * @return false if the visitor stopped early
+     */
+    public boolean forEach(RecordVisitor<String> visitor) {
+        boolean[] completed = { true };
+        forEachLive((line, offset) -> {
+            if (!visitor.visit(line)) {
+                completed[0] = false;
+            }
+            return completed[0];
+        });
+        return completed[0];
+    }
+
+    /**
+     * Get current records whose indexed field has the given value
+     * Costs one index probe and read per matching record, never a file scan
+     * @param from - number of matching records to skip
+     * @param limit - maximum number of records to return
+     */
+    public synchronized List<String> getByField(String value, int from, int limit) {
+        List<String> lines = new ArrayList<>();
+        if (fieldIndex == null) {
+            return lines;
+        }
+        for (String identifier : fieldIndex.get(value, from, limit)) {
+            String line = get(identifier);
+            if (line != null && value.equals(FieldIndex.fieldOf(line, fieldIndex.getField()))) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Number of records indexed under a field value
+     */
+    public synchronized int countByField(String value) {
+        return fieldIndex == null ? 0 : fieldIndex.count(value);
+    }
+
+    /**
+     * Insert or replace a record (one log append)
+     * Returns once the record is durable
+     * @throws UncheckedIOException if the record could not be written or synced
+     */
+    public void put(String line) {
+        long ticket;
+        synchronized (this) {
+            ticket = putRecord(line);
+        }
+        awaitDurable(ticket);
+    }
+
+    /**
+     * Insert or replace several records with one log append and one sync
+     * Returns once all of them are durable
+     * @throws UncheckedIOException if the records could not be written or synced
+     */
+    public void putAll(List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        long ticket;
+        synchronized (this) {
+            long[] offsets = appendAllToLog(PUT, lines);
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (fieldIndex != null) {
+                    fieldIndex.add(line);
+                }
+                if (indexed) {
+                    index.put(keyOf(line), logLocation(offsets[i]));
+                } else {
+                    records.put(keyOf(line), line);
+                }
+            }
+            if (fieldIndex != null) {
+                fieldIndex.flush();
+                fieldIndex.setLogLength(walLength);
+            }
+            if (indexed) {
+                index.setLogLength(walLength);
+            }
+            ticket = commit.nextTicket();
+        }
+        awaitDurable(ticket);
+    }
+
+    /**
+     * Replace an existing record (one log append)
+     * Returns once the record is durable
+     * @return false if there is no record with this identifier
+     * @throws UncheckedIOException if the record could not be written or synced
+     */
+    public boolean update(String identifier, String line) {
+        long ticket;
+        synchronized (this) {
+            if (!contains(identifier)) {
+                return false;
+            }
+            ticket = putRecord(line);
+        }
+        awaitDurable(ticket);
+        return true;
+    }
+
+    /**
+     * Remove a record (one log append)
+     * Returns once the removal is durable
+     * @return true if the record existed
+     * @throws UncheckedIOException if the removal could not be written or synced
+     */
+    public boolean remove(String identifier) {
+        long ticket;
+        synchronized (this) {
+            if (!contains(identifier)) {
+                return false;
+            }
+            appendToLog(DELETE, identifier);
+            if (indexed) {
+                index.remove(identifier);
+                index.setLogLength(walLength);
+            } else {
+                records.remove(identifier);
+            }
+            ticket = commit.nextTicket();
+        }
+        awaitDurable(ticket);
+        return true;
+    }
+
+    /**
+     * Number of log syncs and of writes they covered, e.g. for storage statistics
+     */
+    public long[] getCommitCounts() {
+        return new long[] { commit.getSyncCount(), commit.getTicketCount() };
+    }
+
+    /**
+     * Replace the whole content with the given lines
+     * Writes a fresh snapshot and starts a new, empty log
+     * @throws UncheckedIOException if the new content could not be written
+     */
+    public void replaceAll(List<String> lines) {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                writeSnapshot(lines);
+            }
+        }
+    }
+
+    /**
+     * Compact the data file: write the live records as a new snapshot, swap it
+     * in atomically and drop the part of the log it covers
+     * The snapshot is written without holding the store lock, so puts and reads
+     * continue meanwhile; changes made during compaction stay in the new log
+     * @return bytes reclaimed, or -1 if compaction failed
+     */
+    public long compact() {
+        synchronized (compactionLock) {
+            long frozenLength;
+            long sizeBefore;
+            List<String> memoryLines = null;
+            synchronized (this) {
+                frozenLength = walLength;
+                sizeBefore = sizeOf(filename) + walLength;
+                if (!indexed) {
+                    memoryLines = new ArrayList<>(records.values());
+                }
+            }
+
+            Path tempSnapshot = Paths.get(filename + TEMP_SUFFIX);
+            String tempIndexFilename = indexFilename + TEMP_SUFFIX;
+            OffsetIndex newIndex = indexed ? OffsetIndex.create(tempIndexFilename, 0) : null;
+            try {
+                FileOutputStream fileOut = new FileOutputStream(tempSnapshot.toFile());
+                try (OutputStream out = new BufferedOutputStream(fileOut, 64 * 1024)) {
+                    long[] position = new long[1];
+                    LineHandler writer = (line, offset) -> {
+                        if (newIndex != null) {
+                            newIndex.put(keyOf(line), position[0]);
+                        }
+                        position[0] += writeRecord(out, line);
+                        return true;
+                    };
+
+                    if (memoryLines != null) {
+                        for (String line : memoryLines) {
+                            writer.handle(line, -1);
+                        }
+                    } else {
+                        scanFile(filename, 0, false, (line, offset) ->
+                                !isLatest(keyOf(line), offset) || writer.handle(line, offset));
+                        scanFile(walFilename, 0, true, (entry, offset) -> {
+                            if (offset >= frozenLength) {
+                                return false;
+                            }
+                            String line = payloadOf(entry);
+                            if (entry.startsWith(PUT) && isLatest(keyOf(line), logLocation(offset))) {
+                                writer.handle(line, offset);
+                            }
+                            return true;
+                        });
+                    }
+                    out.flush();
+                    fileOut.getFD().sync();
+                }
+
+                synchronized (this) {
+                    swapInSnapshot(tempSnapshot, frozenLength, newIndex, tempIndexFilename);
+                    return sizeBefore - sizeOf(filename);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Error compacting " + filename + ": " + e.getMessage());
+                if (newIndex != null) {
+                    newIndex.close();
+                }
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Bytes in the log since the last snapshot
+     */
+    public synchronized long getLogLength() {
+        return walLength;
+    }
+
+    /**
+     * Close the log and index files
+     */
+    public void close() {
+        commit.close();
+        synchronized (this) {
+            closeChannel(snapshotChannel);
+            closeChannel(walChannel);
+            snapshotChannel = null;
+            walChannel = null;
+            if (index != null) {
+                index.close();
+            }
+            if (fieldIndex != null) {
+                fieldIndex.close();
+            }
+        }
+    }
+
+    private void load() {
+        try {
+            Path parent = Paths.get(filename).getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            completeSnapshotSwap();
+            walChannel = FileChannel.open(Paths.get(walFilename), StandardOpenOption.CREATE,
+                                          StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error opening log: " + e.getMessage(), e);
+        }
+
+        if (!indexed) {
+            scanFile(filename, 0, false, (line, offset) -> {
+                records.put(keyOf(line), line);
+                return true;
+            });
+            replayLog(0);
+            return;
+        }
+
+        index = OffsetIndex.open(indexFilename);
+        long logSize = sizeOf(walFilename);
+        boolean fieldIndexLoaded = fieldIndex == null || fieldIndex.load()
+                && fieldIndex.covers(sizeOf(filename), modifiedOf(filename), logSize);
+        if (index != null && fieldIndexLoaded
+                && index.covers(sizeOf(filename), modifiedOf(filename), logSize)) {
+            // Catch up with log records written after either index was last updated
+            replayLog(fieldIndex == null ? index.getLogLength() :
+                      Math.min(index.getLogLength(), fieldIndex.getLogLength()));
+        } else {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Build the indexes from scratch by scanning the snapshot and the log
+     */
+    private void rebuildIndex() {
+        if (index != null) {
+            index.close();
+        }
+        index = OffsetIndex.create(indexFilename, 0);
+        if (fieldIndex != null) {
+            fieldIndex.reset();
+        }
+        scanFile(filename, 0, false, (line, offset) -> {
+            index.put(keyOf(line), offset);
+            if (fieldIndex != null) {
+                fieldIndex.add(line);
+            }
+            return true;
+        });
+        replayLog(0);
+        index.setSnapshot(sizeOf(filename), modifiedOf(filename));
+        if (fieldIndex != null) {
+            fieldIndex.setSnapshot(sizeOf(filename), modifiedOf(filename));
+        }
+        System.out.println("Index rebuilt for " + filename);
+    }
+
+    /**
+     * Apply logged changes from a position on top of the current state
+     * A damaged record (e.g. a torn write at the tail) ends the log there
+     */
+    private void replayLog(long from) {
+        long end = scanFile(walFilename, from, true, (entry, offset) -> {
+            String[] parts = entry.split("\\|", 3);
+            if (parts.length < 3 || !checksum(parts[2]).equals(parts[1])) {
+                return false;
+            }
+            if (PUT.equals(parts[0])) {
+                if (fieldIndex != null) {
+                    fieldIndex.add(parts[2]);
+                }
+                if (indexed) {
+                    index.put(keyOf(parts[2]), logLocation(offset));
+                } else {
+                    records.put(keyOf(parts[2]), parts[2]);
+                }
+            } else if (DELETE.equals(parts[0])) {
+                if (indexed) {
+                    index.remove(parts[2]);
+                } else {
+                    records.remove(parts[2]);
+                }
+            }
+            return true;
+        });
+
+        try {
+            if (end < walChannel.size()) {
+                System.err.println("Ignoring damaged log tail in " + walFilename);
+                walChannel.truncate(end);
+            }
+        } catch (IOException e) {
+            System.err.println("Error truncating log: " + e.getMessage());
+        }
+        walLength = end;
+        if (fieldIndex != null) {
+            fieldIndex.flush();
+            fieldIndex.setLogLength(walLength);
+        }
+        if (indexed) {
+            index.setLogLength(walLength);
+        }
+    }
+
+    /**
+     * Visit the latest version of every live record, without holding the store lock
+     * The end of the log is noted first, as compaction does, and the compaction lock
+     * keeps the snapshot and log in place. A record changed after the noted end is
+     * visited once, in its current version; one removed during the scan is skipped
+     */
+    private void forEachLive(LineHandler handler) {
+        synchronized (compactionLock) {
+            long logEnd;
+            List<String> memoryLines = null;
+            synchronized (this) {
+                logEnd = walLength;
+                if (!indexed) {
+                    memoryLines = new ArrayList<>(records.values());
+                }
+            }
+
+            if (memoryLines != null) {
+                for (String line : memoryLines) {
+                    if (!handler.handle(line, -1)) {
+                        return;
+                    }
+                }
+                return;
+            }
+
+            Set<String> changed = new HashSet<>();
+            LineHandler visitLatest = (line, location) -> {
+                String key = keyOf(line);
+                long latest = locationOf(key);
+                if (latest == location) {
+                    return handler.handle(line, location);
+                }
+                if (latest == OffsetIndex.NOT_FOUND || latest >= 0 || -latest - 1 < logEnd
+                        || !changed.add(key)) {
+                    return true;
+                }
+                String current = get(key);
+                return current == null || handler.handle(current, latest);
+            };
+
+            boolean[] stopped = new boolean[1];
+            scanFile(filename, 0, false, (line, offset) -> {
+                if (!visitLatest.handle(line, offset)) {
+                    stopped[0] = true;
+                    return false;
+                }
+                return true;
+            });
+            if (stopped[0]) {
+                return;
+            }
+            scanFile(walFilename, 0, true, (entry, offset) -> {
+                if (offset >= logEnd) {
+                    return false;
+                }
+                return !entry.startsWith(PUT) || visitLatest.handle(payloadOf(entry), logLocation(offset));
+            });
+        }
+    }
+
+    /**
+     * Write new content as the snapshot atomically, start a new log and rebuild the index
+     * The new log opens with a generation entry naming the new snapshot (size and
+     * modification time) and is moved into place before the snapshot: that move
+     * commits the swap. After a crash between the two moves the old log is already
+     * gone, so it cannot be replayed over the new content, and load() finishes the swap
+     * @throws UncheckedIOException if the snapshot or the new log could not be written
+     */
+    private void writeSnapshot(List<String> lines) {
+        try {
+            Path target = Paths.get(filename);
+            Path temp = Paths.get(filename + TEMP_SUFFIX);
+            FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+            try (OutputStream out = new BufferedOutputStream(fileOut)) {
+                for (String line : lines) {
+                    writeRecord(out, line);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            }
+
+            String generation = generationOf(temp.toString());
+            byte[] entry = (GENERATION + "|" + checksum(generation) + "|" + generation + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            Path tempWal = Paths.get(walFilename + TEMP_SUFFIX);
+            try (FileChannel out = FileChannel.open(tempWal, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap(entry));
+                out.force(true);
+            }
+
+            closeChannel(walChannel);
+            try {
+                Files.move(tempWal, Paths.get(walFilename), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                walChannel = FileChannel.open(Paths.get(walFilename),
+                                              StandardOpenOption.READ, StandardOpenOption.WRITE);
+                walLength = walChannel.size();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            closeChannel(snapshotChannel);
+            snapshotChannel = null;
+
+            if (indexed) {
+                rebuildIndex();
+            } else {
+                records.clear();
+                for (String line : lines) {
+                    records.put(keyOf(line), line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing snapshot " + filename + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finish a snapshot swap cut short by a crash
+     * If the log opens with a generation entry for a snapshot other than the data
+     * file, and the written temp snapshot is that one, move it into place
+     */
+    private void completeSnapshotSwap() throws IOException {
+        Path wal = Paths.get(walFilename);
+        if (!Files.exists(wal)) {
+            return;
+        }
+        String first;
+        try (BufferedReader reader = Files.newBufferedReader(wal, StandardCharsets.UTF_8)) {
+            first = reader.readLine();
+        }
+        if (first == null || !first.startsWith(GENERATION + "|")) {
+            return;
+        }
+        String[] parts = first.split("\\|", 3);
+        if (parts.length < 3 || !checksum(parts[2]).equals(parts[1])) {
+            return;
+        }
+        String temp = filename + TEMP_SUFFIX;
+        if (generationOf(filename).equals(parts[2]) || !generationOf(temp).equals(parts[2])) {
+            return;
+        }
+        Files.move(Paths.get(temp), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Completed interrupted snapshot of " + filename);
+    }
+
+    private static String generationOf(String file) {
+        return sizeOf(file) + "," + modifiedOf(file);
+    }
+
+    /**
+     * Final step of compaction, called with the store lock held
+     * Moves the log written since compaction started into a fresh log,
+     * then replaces the snapshot, the log and the index in that order
+     * (after a crash in between, the index no longer matches and is rebuilt)
+     */
+    private void swapInSnapshot(Path tempSnapshot, long frozenLength,
+                                OffsetIndex newIndex, String tempIndexFilename) throws IOException {
+        Path tempWal = Paths.get(walFilename + TEMP_SUFFIX);
+        long tailLength = walLength - frozenLength;
+        try (FileChannel out = FileChannel.open(tempWal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < tailLength) {
+                copied += walChannel.transferTo(frozenLength + copied, tailLength - copied, out);
+            }
+            out.force(true);
+        }
+
+        if (newIndex != null) {
+            scanFile(tempWal.toString(), 0, true, (entry, offset) -> {
+                String payload = payloadOf(entry);
+                if (entry.startsWith(PUT)) {
+                    newIndex.put(keyOf(payload), logLocation(offset));
+                } else if (entry.startsWith(DELETE)) {
+                    newIndex.remove(payload);
+                }
+                return true;
+            });
+            newIndex.close();
+        }
+
+        Files.move(tempSnapshot, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        closeChannel(walChannel);
+        Files.move(tempWal, Paths.get(walFilename), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        walChannel = FileChannel.open(Paths.get(walFilename),
+                                      StandardOpenOption.READ, StandardOpenOption.WRITE);
+        walLength = tailLength;
+        closeChannel(snapshotChannel);
+        snapshotChannel = null;
+
+        if (newIndex != null) {
+            index.close();
+            Files.move(Paths.get(tempIndexFilename), Paths.get(indexFilename),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            index = OffsetIndex.open(indexFilename);
+            index.setSnapshot(sizeOf(filename), modifiedOf(filename));
+            index.setLogLength(walLength);
+        }
+        if (fieldIndex != null) {
+            // Record identifiers survive compaction, so the postings still hold
+            fieldIndex.setSnapshot(sizeOf(filename), modifiedOf(filename));
+            fieldIndex.setLogLength(walLength);
+        }
+    }
+
+    /**
+     * Check (under the store lock) that a location holds the latest version of a key
+     */
+    private synchronized boolean isLatest(String key, long location) {
+        return index.get(key) == location;
+    }
+
+    /**
+     * Location (under the store lock) of the latest version of a key
+     */
+    private synchronized long locationOf(String key) {
+        return index.get(key);
+    }
+
+    /**
+     * Write one record line
+     * @return bytes written
+     */
+    private static int writeRecord(OutputStream out, String line) {
+        try {
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            return bytes.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Append and index a record, called with the store lock held
+     * @return commit ticket of the append
+     */
+    private long putRecord(String line) {
+        long offset = appendToLog(PUT, line);
+        if (fieldIndex != null) {
+            fieldIndex.add(line);
+            fieldIndex.flush();
+            fieldIndex.setLogLength(walLength);
+        }
+        if (indexed) {
+            index.put(keyOf(line), logLocation(offset));
+            index.setLogLength(walLength);
+        } else {
+            records.put(keyOf(line), line);
+        }
+        return commit.nextTicket();
+    }
+
+    /**
+     * Wait, without the store lock, until an append is fsynced
+     * @throws UncheckedIOException if the sync failed (the record may not survive a crash)
+     */
+    private void awaitDurable(long ticket) {
+        try {
+            commit.awaitDurable(ticket);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error syncing log " + walFilename + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fsync the log, called by the group commit flusher without the store lock
+     * If compaction swapped the log meanwhile, the new one (already synced
+     * when it was swapped in) is synced instead
+     */
+    private void forceLog() throws IOException {
+        while (true) {
+            FileChannel channel = walChannel;
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(false);
+                return;
+            } catch (ClosedChannelException e) {
+                // A swap in progress holds the store lock until the new log is open
+                synchronized (this) {
+                    if (walChannel == channel) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Append one change record to the log (written to the OS, not yet fsynced)
+     * @return byte offset of the record in the log
+     * @throws UncheckedIOException if it could not be written (the log is left as it was)
+     */
+    private long appendToLog(String operation, String payload) {
+        long offset = walLength;
+        writeToLog((operation + "|" + checksum(payload) + "|" + payload + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        return offset;
+    }
+
+    /**
+     * Append several change records to the log with one write
+     * @return byte offset of each record in the log
+     * @throws UncheckedIOException if they could not be written (the log is left as it was)
+     */
+    private long[] appendAllToLog(String operation, List<String> payloads) {
+        long[] offsets = new long[payloads.size()];
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        for (int i = 0; i < payloads.size(); i++) {
+            String payload = payloads.get(i);
+            offsets[i] = walLength + entries.size();
+            entries.writeBytes((operation + "|" + checksum(payload) + "|" + payload + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        writeToLog(entries.toByteArray());
+        return offsets;
+    }
+
+    /**
+     * Write bytes at the end of the log and move its end past them
+     * A partly written entry is cut off again, so the next append starts clean
+     */
+    private void writeToLog(byte[] bytes) {
+        long start = walLength;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += walChannel.write(buffer, position);
+            }
+            walLength = position;
+        } catch (IOException e) {
+            try {
+                walChannel.truncate(start);
+            } catch (IOException truncateError) {
+                // Replay stops at the torn entry, as its checksum does not match
+            }
+            throw new UncheckedIOException("Error writing to log " + walFilename + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read a file line by line, passing each line with its byte offset
+     * @param requireNewline - treat a last line without '\n' as incomplete
+     * @return offset just after the last line that was handled
+     */
+    private static long scanFile(String file, long from, boolean requireNewline, LineHandler handler) {
+        if (!Files.exists(Paths.get(file))) {
+            return from;
+        }
+        long position = from;
+        try (InputStream in = new FileInputStream(file)) {
+            in.skipNBytes(from);
+            byte[] buffer = new byte[64 * 1024];
+            int length = 0;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+                int scanFrom = length;
+                length += read;
+                int start = 0;
+                for (int i = scanFrom; i < length; i++) {
+                    if (buffer[i] == '\n') {
+                        if (!handleLine(buffer, start, i, position, handler)) {
+                            return position;
+                        }
+                        position += i + 1 - start;
+                        start = i + 1;
+                    }
+                }
+                // Keep the unfinished line at the front of the buffer
+                length -= start;
+                System.arraycopy(buffer, start, buffer, 0, length);
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            if (length > 0 && !requireNewline && handleLine(buffer, 0, length, position, handler)) {
+                position += length;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+        }
+        return position;
+    }
+
+    /**
+     * Decode one line straight from the read buffer and pass it on (blank lines are skipped)
+     * @return false if the handler stopped reading
+     */
+    private static boolean handleLine(byte[] buffer, int start, int end, long position,
+                                      LineHandler handler) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        boolean blank = true;
+        for (int i = start; i < end && blank; i++) {
+            blank = (buffer[i] & 0xff) <= ' ';
+        }
+        return blank || handler.handle(new String(buffer, start, end - start, StandardCharsets.UTF_8),
+                                       position);
+    }
+
+    /**
+     * Read one line starting at a byte offset
+     */
+    private static String readLineAt(FileChannel channel, long position) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            while (true) {
+                int read = channel.read(buffer, position + buffer.position());
+                for (int i = 0; i < buffer.position(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        return decodeLine(buffer, i);
+                    }
+                }
+                if (read < 0) {
+                    return decodeLine(buffer, buffer.position());
+                }
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String decodeLine(ByteBuffer buffer, int length) {
+        if (length > 0 && buffer.get(length - 1) == '\r') {
+            length--;
+        }
+        return new String(buffer.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private FileChannel snapshotChannel() {
+        if (snapshotChannel == null) {
+            try {
+                snapshotChannel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error opening file: " + e.getMessage(), e);
+            }
+        }
+        return snapshotChannel;
+    }
+
+    /**
+     * Log positions are stored as negative locations to tell them from snapshot offsets
+     */
+    private static long logLocation(long offset) {
+        return -offset - 1;
+    }
+
+    private static String payloadOf(String entry) {
+        if (entry == null) {
+            return null;
+        }
+        String[] parts = entry.split("\\|", 3);
+        return parts.length < 3 ? null : parts[2];
+    }
+
+    private static long sizeOf(String file) {
+        File f = new File(file);
+        return f.exists() ? f.length() : 0;
+    }
+
+    private static long modifiedOf(String file) {
+        File f = new File(file);
+        return f.exists() ? f.lastModified() : 0;
+    }
+
+    private static void closeChannel(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String checksum(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,13 @@
+package util;
+
+/**
+ * Callback for streaming over records one at a time
+ * Lets a caller stop early instead of loading every record into a list
+ */
+public interface RecordVisitor<T> {
+    /**
+     * Handle one record
+     * @return true to continue, false to stop reading
+     */
+    boolean visit(T record);
+}
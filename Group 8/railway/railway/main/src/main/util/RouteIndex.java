@@ -0,0 +1,314 @@
+package util;
+
+import model.Train;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the trains running between every pair of stations
+ * Stations are case-folded and interned, and each (boarding, destination) pair of
+ * a train's route points to the train, so a search is two hash lookups plus its
+ * results instead of a scan of trains.txt. A train with k stops is listed under
+ * k(k-1)/2 pairs
+ * Each pair also keeps its trains sorted by departure time (parsed once into the
+ * minute of the day), so a departure window is two binary searches plus its results
+ * Lists are replaced, never changed, so searches read them without locking while
+ * admins add, update and delete trains
+ * Demonstrates Singleton Design Pattern
+ */
+public class RouteIndex {
+
+    private static RouteIndex instance;
+
+    private static final Routes NO_ROUTES = new Routes(new Route[0]);
+
+    private final Map<String, Map<String, Routes>> routes = new ConcurrentHashMap<>();
+    private final Map<String, Train> trains = new ConcurrentHashMap<>();
+
+    /**
+     * A train that stops at a station and later at another
+     */
+    public static class Route {
+        private final Train train;
+        private final int fromStop;
+        private final int toStop;
+        private final int departureMinute;
+
+        private Route(Train train, int fromStop, int toStop) {
+            this.train = train;
+            this.fromStop = fromStop;
+            this.toStop = toStop;
+            this.departureMinute = InputValidator.toMinuteOfDay(train.getDepartureTime());
+        }
+
+        /**
+         * The train as saved in trains.txt (shared, so copy it before changing it)
+         */
+        public Train getTrain() {
+            return train;
+        }
+
+        public int getFromStop() {
+            return fromStop;
+        }
+
+        public int getToStop() {
+            return toStop;
+        }
+
+        /**
+         * Minute of the day the train leaves its source (-1 if its time is not valid)
+         */
+        public int getDepartureMinute() {
+            return departureMinute;
+        }
+    }
+
+    /**
+     * The trains between one pair of stations, in the order they were added and by departure
+     */
+    private static class Routes {
+        final Route[] added;
+        final Route[] byDeparture;
+        final int[] departureMinutes;
+
+        Routes(Route[] added) {
+            this.added = added;
+            this.byDeparture = added.clone();
+            Arrays.sort(byDeparture, (a, b) -> Integer.compare(a.departureMinute, b.departureMinute));
+            this.departureMinutes = new int[added.length];
+            for (int i = 0; i < added.length; i++) {
+                departureMinutes[i] = byDeparture[i].departureMinute;
+            }
+        }
+
+        /**
+         * Index of the first train leaving at or after a minute
+         */
+        int firstDepartingAt(int minute) {
+            int low = 0;
+            int high = departureMinutes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (departureMinutes[middle] < minute) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private RouteIndex() {
+        CsvCursor fields = new CsvCursor("");
+        FileUtil.forEachRecord(FileUtil.TRAINS_FILE, line -> {
+            try {
+                fields.reset(line);
+                if (fields.fieldCount() >= 7) {
+                    Train train = new Train(fields.nextString(), fields.nextString(), fields.nextString(),
+                                            fields.nextString(), fields.nextInt(), fields.nextInt(),
+                                            fields.nextDouble());
+                    if (fields.hasNext()) {
+                        String stops = fields.nextString();
+                        if (!stops.isEmpty()) {
+                            train.setIntermediateStops(Arrays.asList(stops.split(";")));
+                        }
+                    }
+                    if (fields.hasNext()) {
+                        List<Integer> minutes = InputValidator.parseMinutes(fields.nextString());
+                        if (minutes != null) {
+                            train.setRunningMinutes(minutes);
+                        }
+                    }
+                    put(train);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error indexing train: " + e.getMessage());
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Get the shared index, built from trains.txt on first use
+     */
+    public static synchronized RouteIndex getInstance() {
+        if (instance == null) {
+            instance = new RouteIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Trains that stop at source and later at destination (any case), in the order they were added
+     */
+    public List<Route> find(String source, String destination) {
+        if (source == null || destination == null) {
+            return Collections.emptyList();
+        }
+        Routes found = routesBetween(source, destination);
+        return found == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(found.added));
+    }
+
+    /**
+     * Trains that stop at source and later at destination and leave their source between
+     * two minutes of the day (inclusive), ordered by departure; when from is after to the
+     * window runs past midnight, so evening trains come before early-morning ones
+     */
+    public List<Route> findDeparting(String source, String destination, int fromMinute, int toMinute) {
+        Routes found = source == null || destination == null ? null : routesBetween(source, destination);
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        List<Route> departing = Arrays.asList(found.byDeparture);
+        if (fromMinute <= toMinute) {
+            return Collections.unmodifiableList(departing.subList(found.firstDepartingAt(fromMinute),
+                                                                  found.firstDepartingAt(toMinute + 1)));
+        }
+        List<Route> overnight = new ArrayList<>(departing.subList(found.firstDepartingAt(fromMinute),
+                                                                  departing.size()));
+        overnight.addAll(departing.subList(found.firstDepartingAt(0), found.firstDepartingAt(toMinute + 1)));
+        return Collections.unmodifiableList(overnight);
+    }
+
+    /**
+     * Index a new train, or replace an updated one in place (it keeps its place in results)
+     * The train is kept as given, so callers must not change it afterwards
+     */
+    public synchronized void put(Train train) {
+        Train old = trains.put(train.getTrainNumber(), train);
+        if (old != null && !normalizedStops(old).equals(normalizedStops(train))) {
+            unlink(old);
+        }
+        List<String> stops = normalizedStops(train);
+        boolean[] firstVisit = firstVisits(stops);
+        for (int from = 0; from < stops.size(); from++) {
+            if (!firstVisit[from]) {
+                continue;
+            }
+            Map<String, Routes> toStations = routes.computeIfAbsent(stops.get(from),
+                    key -> new ConcurrentHashMap<>());
+            for (int to = from + 1; to < stops.size(); to++) {
+                if (!firstVisit[to]) {
+                    continue;
+                }
+                Route route = new Route(train, from, to);
+                Route[] current = toStations.getOrDefault(stops.get(to), NO_ROUTES).added;
+                int index = old == null ? -1 : indexOf(current, train.getTrainNumber());
+                Route[] updated;
+                if (index >= 0) {
+                    updated = current.clone();
+                    updated[index] = route;
+                } else {
+                    updated = Arrays.copyOf(current, current.length + 1);
+                    updated[current.length] = route;
+                }
+                toStations.put(stops.get(to), new Routes(updated));
+            }
+        }
+    }
+
+    /**
+     * Drop a deleted train from the index
+     */
+    public synchronized void remove(String trainNumber) {
+        Train old = trains.remove(trainNumber);
+        if (old != null) {
+            unlink(old);
+        }
+    }
+
+    /**
+     * Every indexed train (shared, so copy one before changing it)
+     */
+    public Collection<Train> getTrains() {
+        return Collections.unmodifiableCollection(trains.values());
+    }
+
+    /**
+     * Number of trains indexed
+     */
+    public int size() {
+        return trains.size();
+    }
+
+    /**
+     * Take a train out of every station pair on its route
+     */
+    private void unlink(Train train) {
+        List<String> stops = normalizedStops(train);
+        for (int from = 0; from < stops.size(); from++) {
+            Map<String, Routes> toStations = routes.get(stops.get(from));
+            if (toStations == null) {
+                continue;
+            }
+            for (int to = from + 1; to < stops.size(); to++) {
+                Routes routesTo = toStations.get(stops.get(to));
+                Route[] current = routesTo == null ? null : routesTo.added;
+                int index = current == null ? -1 : indexOf(current, train.getTrainNumber());
+                if (index < 0) {
+                    continue;
+                }
+                if (current.length == 1) {
+                    toStations.remove(stops.get(to));
+                } else {
+                    Route[] updated = new Route[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, index);
+                    System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+                    toStations.put(stops.get(to), new Routes(updated));
+                }
+            }
+        }
+    }
+
+    private Routes routesBetween(String source, String destination) {
+        Map<String, Routes> toStations = routes.get(fold(source));
+        return toStations == null ? null : toStations.get(fold(destination));
+    }
+
+    private static int indexOf(Route[] routes, String trainNumber) {
+        for (int i = 0; i < routes.length; i++) {
+            if (routes[i].train.getTrainNumber().equals(trainNumber)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Which stops are a station's first on the route (a station listed twice is
+     * indexed at its first stop, where Train.stopIndex finds it)
+     */
+    private static boolean[] firstVisits(List<String> stops) {
+        boolean[] first = new boolean[stops.size()];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < stops.size(); i++) {
+            first[i] = seen.add(stops.get(i));
+        }
+        return first;
+    }
+
+    /**
+     * Case-folded stations of a train's route, interned so every train shares one copy of each
+     */
+    private static List<String> normalizedStops(Train train) {
+        List<String> stops = new ArrayList<>();
+        for (String stop : train.getStops()) {
+            stops.add(fold(stop).intern());
+        }
+        return stops;
+    }
+
+    private static String fold(String station) {
+        return station.trim().toLowerCase(Locale.ROOT);
+    }
+}
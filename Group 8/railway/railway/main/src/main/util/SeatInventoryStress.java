@@ -0,0 +1,153 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress run for the lock-free seat counters of TrainInventoryFile
+ * Many threads book and cancel seats of every class of one train on one date at
+ * the same time, on a scratch inventory file, while a checker keeps reading the
+ * counters. The run fails if a class is ever oversold or over-released:
+ *   0 <= available <= total at every read, and at the end
+ *   available == total - booked + released for every class
+ * Run with: java util.SeatInventoryStress [threads] [operationsPerThread]
+ */
+public class SeatInventoryStress {
+    private static final String TRAIN_NUMBER = "STRESS";
+    private static final int TOTAL_SEATS = 400;
+    private static final int MAX_SEATS_PER_BOOKING = 6;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) :
+                      Runtime.getRuntime().availableProcessors() * 2;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        Path file = Files.createTempFile("trains", ".dat");
+        boolean passed;
+        try {
+            SingletonConnection config = SingletonConnection.getInstance();
+            TrainInventoryFile inventory = TrainInventoryFile.open(file.toString(),
+                    config.getClassSeatShares(), config.getBookingWindowDays());
+            inventory.addTrain(TRAIN_NUMBER, TOTAL_SEATS);
+            passed = run(inventory, LocalDate.now().plusDays(1).toEpochDay(), threads, operations);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Book and cancel from several threads and check the counters
+     * @return true if the invariant held throughout
+     */
+    private static boolean run(TrainInventoryFile inventory, long epochDay, int threads, int operations)
+            throws InterruptedException {
+        int classes = TrainInventoryFile.CLASS_COUNT;
+        int[] totals = new int[classes];
+        for (int c = 0; c < classes; c++) {
+            totals[c] = inventory.getTotalSeats(TRAIN_NUMBER, c);
+        }
+        AtomicLong[] booked = newCounters(classes);
+        AtomicLong[] released = newCounters(classes);
+        AtomicLong refused = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        AtomicBoolean broken = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Checker: every read must stay within 0..total
+        Thread checker = new Thread(() -> {
+            while (running.get()) {
+                for (int c = 0; c < classes; c++) {
+                    int available = inventory.getAvailableSeats(TRAIN_NUMBER, c, epochDay);
+                    if (available < 0 || available > totals[c]) {
+                        System.out.println("Class " + c + " read " + available + " of " + totals[c] + " seats.");
+                        broken.set(true);
+                    }
+                    reads.incrementAndGet();
+                }
+            }
+        });
+
+        // Workers: book a few seats, or cancel one of their own earlier bookings
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<int[]> held = new ArrayList<>();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < operations; i++) {
+                    if (held.isEmpty() || random.nextInt(100) < 55) {
+                        int classIndex = random.nextInt(classes);
+                        int seats = 1 + random.nextInt(MAX_SEATS_PER_BOOKING);
+                        if (inventory.bookSeats(TRAIN_NUMBER, classIndex, epochDay, seats)) {
+                            booked[classIndex].addAndGet(seats);
+                            held.add(new int[] { classIndex, seats });
+                        } else {
+                            refused.incrementAndGet();
+                        }
+                    } else {
+                        int[] booking = held.remove(random.nextInt(held.size()));
+                        if (inventory.releaseSeats(TRAIN_NUMBER, booking[0], epochDay, booking[1])) {
+                            released[booking[0]].addAndGet(booking[1]);
+                        }
+                    }
+                }
+            }));
+        }
+
+        checker.start();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - started;
+        running.set(false);
+        checker.join();
+
+        // Every seat booked and not released must still be taken
+        boolean passed = !broken.get();
+        for (int c = 0; c < classes; c++) {
+            int available = inventory.getAvailableSeats(TRAIN_NUMBER, c, epochDay);
+            long expected = totals[c] - booked[c].get() + released[c].get();
+            System.out.println("Class " + c + ": total " + totals[c] + ", booked " + booked[c].get() +
+                               ", released " + released[c].get() + ", available " + available +
+                               " (expected " + expected + ")");
+            if (available != expected) {
+                passed = false;
+            }
+        }
+        long total = (long) threads * operations;
+        System.out.println(threads + " threads, " + total + " operations in " + elapsed / 1_000_000 +
+                           " ms (" + total * 1_000_000_000L / Math.max(1, elapsed) + " per second), " +
+                           refused.get() + " bookings refused for lack of seats, " + reads.get() +
+                           " checker reads.");
+        System.out.println(passed ? "PASSED: no seat was oversold or lost." :
+                                    "FAILED: seat counters broke the invariant.");
+        return passed;
+    }
+
+    private static AtomicLong[] newCounters(int count) {
+        AtomicLong[] counters = new AtomicLong[count];
+        for (int i = 0; i < count; i++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+}
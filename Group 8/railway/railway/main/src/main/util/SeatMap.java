@@ -0,0 +1,607 @@
+package util;
+
+import model.Train;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seat-level allocation for every train, class and journey date, one BitSet per coach
+ * (set bit = taken). Seats are numbered from 1 across the class and shown with the
+ * class's coach letter, e.g. "S<coach>-<berth>" for SL or "B<coach>-<berth>" for 3A
+ * A date's map is created on its first booking and dropped once the date has passed
+ * Multi-stop trains keep one set of coaches per route segment, so a seat freed
+ * at a stop can be assigned again for the rest of the route
+ * Each map is kept in seatmaps.txt as "trainNumber/class/date,totalSeats,seatsPerCoach,segments"
+ * where segments are '|'-separated, the coaches of a segment are ';'-separated and
+ * each coach is its BitSet words in hex ('.'-separated)
+ * Demonstrates Singleton Design Pattern
+ */
+public class SeatMap {
+
+    /** Coach letters of the classes in Train.TICKET_CLASSES order */
+    private static final String[] COACH_PREFIXES = {"H", "A", "B", "S"};
+
+    private static SeatMap instance;
+
+    private final int defaultCoachSize;
+    private final Map<String, TrainSeats> trains = new ConcurrentHashMap<>();
+    private volatile long sweptDay;
+
+    /**
+     * Seat bitmaps of one train, class and date, one set of coaches per route segment
+     * (a seat is free for a journey if it is free on every segment travelled)
+     * Changes happen under the map's monitor; saving happens under persistLock
+     * so concurrent bookings share one write of the latest state
+     */
+    private static class TrainSeats {
+        final String key;
+        final int coachSize;
+        final ReentrantLock persistLock = new ReentrantLock();
+        int totalSeats;
+        BitSet[][] coaches; // [segment][coach]
+        int[][] freeInCoach;
+        int[] free;
+        long version;
+        long savedVersion;
+
+        TrainSeats(String key, int totalSeats, int coachSize, int segmentCount) {
+            this.key = key;
+            this.coachSize = coachSize;
+            this.coaches = new BitSet[segmentCount][0];
+            this.freeInCoach = new int[segmentCount][0];
+            this.free = new int[segmentCount];
+            resize(totalSeats);
+        }
+
+        int segmentCount() {
+            return coaches.length;
+        }
+
+        /**
+         * Change the number of seats; taken seats beyond the new total stay taken
+         * until released, but are never handed out again
+         */
+        void resize(int newTotal) {
+            int coachCount = (newTotal + coachSize - 1) / coachSize;
+            totalSeats = newTotal;
+            for (int s = 0; s < coaches.length; s++) {
+                if (coachCount > coaches[s].length) {
+                    BitSet[] grown = new BitSet[coachCount];
+                    System.arraycopy(coaches[s], 0, grown, 0, coaches[s].length);
+                    for (int c = coaches[s].length; c < coachCount; c++) {
+                        grown[c] = new BitSet(coachSize);
+                    }
+                    coaches[s] = grown;
+                    freeInCoach[s] = new int[coachCount];
+                }
+                free[s] = 0;
+                for (int c = 0; c < coaches[s].length; c++) {
+                    int seats = seatsIn(c);
+                    freeInCoach[s][c] = seats - coaches[s][c].get(0, seats).cardinality();
+                    free[s] += freeInCoach[s][c];
+                }
+            }
+            version++;
+        }
+
+        int seatsIn(int coach) {
+            return Math.max(0, Math.min(coachSize, totalSeats - coach * coachSize));
+        }
+
+        /**
+         * Seats taken in a coach on any segment from..to-1
+         * (the segment's own BitSet when the journey is one segment)
+         */
+        BitSet occupied(int coach, int from, int to) {
+            if (to - from == 1) {
+                return coaches[from][coach];
+            }
+            BitSet merged = (BitSet) coaches[from][coach].clone();
+            for (int s = from + 1; s < to; s++) {
+                merged.or(coaches[s][coach]);
+            }
+            return merged;
+        }
+
+        /**
+         * Take n seats for segments from..to-1: n adjacent seats in one coach
+         * if possible, otherwise the first free seats coach by coach
+         * @return seat numbers, or null if fewer than n seats are free
+         */
+        int[] allocate(int n, int from, int to) {
+            if (n <= 0 || from < 0 || to > segmentCount() || from >= to) {
+                return null;
+            }
+            int coachCount = coaches[from].length;
+            BitSet[] taken = new BitSet[coachCount];
+            int[] freeSeats = new int[coachCount];
+            int available = 0;
+            for (int c = 0; c < coachCount; c++) {
+                taken[c] = occupied(c, from, to);
+                freeSeats[c] = to - from == 1 ? freeInCoach[from][c] :
+                               seatsIn(c) - taken[c].get(0, seatsIn(c)).cardinality();
+                available += freeSeats[c];
+            }
+            if (available < n) {
+                return null;
+            }
+            int[] seats = new int[n];
+            for (int c = 0; c < coachCount; c++) {
+                if (freeSeats[c] >= n) {
+                    int start = findRun(taken[c], seatsIn(c), n);
+                    if (start >= 0) {
+                        for (int i = 0; i < n; i++) {
+                            seats[i] = take(c, start + i, from, to);
+                        }
+                        return seats;
+                    }
+                }
+            }
+            int count = 0;
+            for (int c = 0; c < coachCount && count < n; c++) {
+                int size = seatsIn(c);
+                for (int berth = taken[c].nextClearBit(0);
+                     freeSeats[c] > 0 && berth < size && count < n;
+                     berth = taken[c].nextClearBit(berth + 1)) {
+                    seats[count++] = take(c, berth, from, to);
+                    freeSeats[c]--;
+                }
+            }
+            return seats;
+        }
+
+        /**
+         * Find the first run of n free berths in a coach, jumping from gap to gap
+         * @return first berth of the run, or -1
+         */
+        static int findRun(BitSet bits, int size, int n) {
+            int start = bits.nextClearBit(0);
+            while (start + n <= size) {
+                int end = bits.nextSetBit(start);
+                if (end < 0 || end > size) {
+                    end = size;
+                }
+                if (end - start >= n) {
+                    return start;
+                }
+                start = bits.nextClearBit(end);
+            }
+            return -1;
+        }
+
+        int take(int coach, int berth, int from, int to) {
+            for (int s = from; s < to; s++) {
+                coaches[s][coach].set(berth);
+                freeInCoach[s][coach]--;
+                free[s]--;
+            }
+            version++;
+            return coach * coachSize + berth + 1;
+        }
+
+        /**
+         * Free exactly these seats on segments from..to-1 (seats already free are ignored)
+         */
+        void release(int[] seatNumbers, int from, int to) {
+            for (int seat : seatNumbers) {
+                int coach = (seat - 1) / coachSize;
+                int berth = (seat - 1) % coachSize;
+                for (int s = Math.max(0, from); s < Math.min(to, segmentCount()); s++) {
+                    if (seat < 1 || coach >= coaches[s].length || !coaches[s][coach].get(berth)) {
+                        continue;
+                    }
+                    coaches[s][coach].clear(berth);
+                    if (berth < seatsIn(coach)) {
+                        freeInCoach[s][coach]++;
+                        free[s]++;
+                    }
+                    version++;
+                }
+            }
+        }
+
+        /**
+         * Seats free on every segment
+         */
+        int freeThrough() {
+            if (segmentCount() == 1) {
+                return free[0];
+            }
+            int count = 0;
+            for (int c = 0; c < coaches[0].length; c++) {
+                count += seatsIn(c) - occupied(c, 0, segmentCount()).get(0, seatsIn(c)).cardinality();
+            }
+            return count;
+        }
+
+        String toFileFormat() {
+            StringBuilder line = new StringBuilder();
+            line.append(key).append(',').append(totalSeats).append(',')
+                .append(coachSize).append(',');
+            for (int s = 0; s < coaches.length; s++) {
+                if (s > 0) {
+                    line.append('|');
+                }
+                for (int c = 0; c < coaches[s].length; c++) {
+                    if (c > 0) {
+                        line.append(';');
+                    }
+                    long[] words = coaches[s][c].toLongArray();
+                    for (int w = 0; w < words.length; w++) {
+                        if (w > 0) {
+                            line.append('.');
+                        }
+                        line.append(Long.toHexString(words[w]));
+                    }
+                }
+            }
+            return line.toString();
+        }
+    }
+
+    private SeatMap(int defaultCoachSize) {
+        this.defaultCoachSize = defaultCoachSize;
+        long today = LocalDate.now().toEpochDay();
+        List<String> stale = new ArrayList<>();
+        FileUtil.forEachRecord(FileUtil.SEATMAPS_FILE, line -> {
+            String key = RecordStore.keyOf(line);
+            long epochDay = epochDayOf(key);
+            if (epochDay < today) {
+                // Whole-train or per-class map from before journey dates, or a past date
+                stale.add(key);
+                return true;
+            }
+            TrainSeats seats = parse(line);
+            if (seats != null) {
+                trains.put(seats.key, seats);
+            }
+            return true;
+        });
+        for (String key : stale) {
+            FileUtil.deleteFromFile(FileUtil.SEATMAPS_FILE, key);
+        }
+        sweptDay = today;
+    }
+
+    /**
+     * Get the shared seat map, loading seatmaps.txt on first use
+     */
+    public static synchronized SeatMap getInstance() {
+        if (instance == null) {
+            instance = new SeatMap(SingletonConnection.getInstance().getSeatsPerCoach());
+        }
+        return instance;
+    }
+
+    /**
+     * Label of a seat number, e.g. 75 in SL with 72 seats per coach is "S2-3"
+     */
+    public String labelOf(String trainNumber, String ticketClass, String journeyDate, int seatNumber) {
+        int coachSize = coachSizeOf(keyOf(trainNumber, ticketClass, journeyDate));
+        return prefixOf(ticketClass) + ((seatNumber - 1) / coachSize + 1) + "-" +
+               ((seatNumber - 1) % coachSize + 1);
+    }
+
+    /**
+     * Seat numbers of ';'-separated labels of one class
+     * (invalid labels and labels of another class are skipped)
+     */
+    public int[] seatNumbersOf(String trainNumber, String ticketClass, String journeyDate, String labels) {
+        int coachSize = coachSizeOf(keyOf(trainNumber, ticketClass, journeyDate));
+        String prefix = prefixOf(ticketClass);
+        List<Integer> numbers = new ArrayList<>();
+        if (labels != null) {
+            for (String label : labels.split(";")) {
+                int dash = label.indexOf('-');
+                if (label.startsWith(prefix) && dash > prefix.length()) {
+                    try {
+                        int coach = Integer.parseInt(label.substring(prefix.length(), dash));
+                        int berth = Integer.parseInt(label.substring(dash + 1));
+                        numbers.add((coach - 1) * coachSize + berth);
+                    } catch (NumberFormatException e) {
+                        // Skip invalid labels
+                    }
+                }
+            }
+        }
+        int[] result = new int[numbers.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = numbers.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * ';'-separated labels of seat numbers, as stored in a ticket
+     */
+    public String labelsOf(String trainNumber, String ticketClass, String journeyDate, int[] seatNumbers) {
+        StringBuilder labels = new StringBuilder();
+        for (int seat : seatNumbers) {
+            if (labels.length() > 0) {
+                labels.append(';');
+            }
+            labels.append(labelOf(trainNumber, ticketClass, journeyDate, seat));
+        }
+        return labels.toString();
+    }
+
+    /**
+     * Change the number of seats of a train's class on every open date
+     */
+    public void setTotalSeats(String trainNumber, String ticketClass, int totalSeats) {
+        String prefix = trainNumber + "/" + ticketClass.trim().toUpperCase() + "/";
+        for (TrainSeats seats : trains.values()) {
+            if (seats.key.startsWith(prefix)) {
+                synchronized (seats) {
+                    seats.resize(totalSeats);
+                }
+                save(seats);
+            }
+        }
+    }
+
+    /**
+     * Drop the seat maps of a deleted train
+     */
+    public void removeTrain(String trainNumber) {
+        String prefix = trainNumber + "/";
+        for (String key : trains.keySet()) {
+            if (key.startsWith(prefix) && trains.remove(key) != null) {
+                FileUtil.deleteFromFile(FileUtil.SEATMAPS_FILE, key);
+            }
+        }
+    }
+
+    /**
+     * Assign n seats of a class on a date, adjacent in one coach when possible
+     * The date's map is created with classSeats seats on its first booking
+     * @return seat numbers, or null if the class is too full
+     */
+    public int[] allocate(String trainNumber, String ticketClass, String journeyDate,
+                          int n, int classSeats) {
+        return allocate(trainNumber, ticketClass, journeyDate, n, classSeats, 1, 0, 1);
+    }
+
+    /**
+     * Assign n seats of a class on a date that are free from stop fromStop to stop toStop
+     * The date's map is created with classSeats seats and segmentCount segments
+     * on its first booking
+     * @return seat numbers, or null if the class is too full on that part of the route
+     */
+    public int[] allocate(String trainNumber, String ticketClass, String journeyDate, int n,
+                          int classSeats, int segmentCount, int fromStop, int toStop) {
+        return allocate(trainNumber, ticketClass, journeyDate, n, classSeats, segmentCount,
+                        fromStop, toStop, true);
+    }
+
+    /**
+     * Assign n seats of a class on a date that are free from stop fromStop to stop toStop
+     * @param save - false to leave saving the map to a later saveAll
+     * @return seat numbers, or null if the class is too full on that part of the route
+     */
+    public int[] allocate(String trainNumber, String ticketClass, String journeyDate, int n,
+                          int classSeats, int segmentCount, int fromStop, int toStop, boolean save) {
+        sweepExpired();
+        TrainSeats seats = trains.computeIfAbsent(keyOf(trainNumber, ticketClass, journeyDate),
+                key -> new TrainSeats(key, classSeats, defaultCoachSize, segmentCount));
+        int[] allocated;
+        synchronized (seats) {
+            allocated = seats.allocate(n, fromStop, toStop);
+        }
+        if (allocated != null && save) {
+            save(seats);
+        }
+        return allocated;
+    }
+
+    /**
+     * Write the latest state of several seat maps with one append to seatmaps.txt
+     * (e.g. after a batch of bookings made with save = false)
+     * The persist locks are taken in key order, so single saves cannot write
+     * an older state after this one
+     * @param keys - "trainNumber/CLASS/date" keys, see keyOf
+     */
+    public void saveAll(Collection<String> keys) {
+        List<TrainSeats> changed = new ArrayList<>();
+        for (String key : new TreeSet<>(keys)) {
+            TrainSeats seats = trains.get(key);
+            if (seats != null) {
+                changed.add(seats);
+            }
+        }
+        for (TrainSeats seats : changed) {
+            seats.persistLock.lock();
+        }
+        try {
+            List<String> lines = new ArrayList<>();
+            long[] versions = new long[changed.size()];
+            for (int i = 0; i < changed.size(); i++) {
+                TrainSeats seats = changed.get(i);
+                synchronized (seats) {
+                    versions[i] = seats.version;
+                    if (seats.version > seats.savedVersion) {
+                        lines.add(seats.toFileFormat());
+                    }
+                }
+            }
+            FileUtil.appendAllToFile(FileUtil.SEATMAPS_FILE, lines);
+            for (int i = 0; i < changed.size(); i++) {
+                changed.get(i).savedVersion = Math.max(changed.get(i).savedVersion, versions[i]);
+            }
+        } finally {
+            for (TrainSeats seats : changed) {
+                seats.persistLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Free exactly the given seats of a train's class on a date
+     */
+    public void release(String trainNumber, String ticketClass, String journeyDate, int[] seatNumbers) {
+        release(trainNumber, ticketClass, journeyDate, seatNumbers, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Free the given seats of a train's class on a date from stop fromStop to stop toStop
+     */
+    public void release(String trainNumber, String ticketClass, String journeyDate,
+                        int[] seatNumbers, int fromStop, int toStop) {
+        TrainSeats seats = trains.get(keyOf(trainNumber, ticketClass, journeyDate));
+        if (seats == null || seatNumbers.length == 0) {
+            return;
+        }
+        synchronized (seats) {
+            seats.release(seatNumbers, fromStop, toStop);
+        }
+        save(seats);
+    }
+
+    /**
+     * Number of seats of a train's class free over the whole route on a date,
+     * or -1 if no seat is booked yet
+     */
+    public int getFreeSeats(String trainNumber, String ticketClass, String journeyDate) {
+        TrainSeats seats = trains.get(keyOf(trainNumber, ticketClass, journeyDate));
+        if (seats == null) {
+            return -1;
+        }
+        synchronized (seats) {
+            return seats.freeThrough();
+        }
+    }
+
+    /**
+     * Seats free on each route segment of every train, class and date with a map,
+     * by keyOf (one segment for a direct train)
+     * Used on start to set the seat counters from the seats actually taken
+     */
+    public Map<String, int[]> getFreeSeatsBySegment() {
+        Map<String, int[]> freeBySegment = new HashMap<>();
+        for (TrainSeats seats : trains.values()) {
+            synchronized (seats) {
+                freeBySegment.put(seats.key, seats.free.clone());
+            }
+        }
+        return freeBySegment;
+    }
+
+    /**
+     * Drop the maps of dates that have passed, at most once a day
+     */
+    private void sweepExpired() {
+        long today = LocalDate.now().toEpochDay();
+        if (sweptDay >= today) {
+            return;
+        }
+        synchronized (this) {
+            if (sweptDay >= today) {
+                return;
+            }
+            for (String key : trains.keySet()) {
+                if (epochDayOf(key) < today && trains.remove(key) != null) {
+                    FileUtil.deleteFromFile(FileUtil.SEATMAPS_FILE, key);
+                }
+            }
+            sweptDay = today;
+        }
+    }
+
+    /**
+     * Key of a train's class on a journey date, e.g. "12951/SL/2026-10-20"
+     */
+    public static String keyOf(String trainNumber, String ticketClass, String journeyDate) {
+        return trainNumber + "/" + ticketClass.trim().toUpperCase() + "/" + journeyDate;
+    }
+
+    /**
+     * Journey date of a key as epoch day, or Long.MIN_VALUE if the key has no date
+     */
+    private static long epochDayOf(String key) {
+        int slash = key.lastIndexOf('/');
+        if (slash < 0 || key.indexOf('/') == slash) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDate.parse(key.substring(slash + 1)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String prefixOf(String ticketClass) {
+        int index = Train.classIndex(ticketClass);
+        return index < 0 ? "C" : COACH_PREFIXES[index];
+    }
+
+    private int coachSizeOf(String key) {
+        TrainSeats seats = trains.get(key);
+        return seats == null ? defaultCoachSize : seats.coachSize;
+    }
+
+    /**
+     * Write the latest state of a map to seatmaps.txt
+     * A caller whose change was already written by another caller returns at once
+     */
+    private void save(TrainSeats seats) {
+        seats.persistLock.lock();
+        try {
+            String line;
+            long version;
+            synchronized (seats) {
+                if (seats.version <= seats.savedVersion) {
+                    return;
+                }
+                line = seats.toFileFormat();
+                version = seats.version;
+            }
+            FileUtil.writeToFile(FileUtil.SEATMAPS_FILE, line, true);
+            seats.savedVersion = version;
+        } finally {
+            seats.persistLock.unlock();
+        }
+    }
+
+    private TrainSeats parse(String line) {
+        try {
+            CsvCursor fields = new CsvCursor(line);
+            if (fields.fieldCount() < 4) {
+                return null;
+            }
+            String key = fields.nextString();
+            int totalSeats = fields.nextInt();
+            int coachSize = fields.nextInt();
+            String[] segments = fields.nextString().split("\\|", -1);
+            TrainSeats seats = new TrainSeats(key, totalSeats, coachSize, segments.length);
+            for (int s = 0; s < segments.length; s++) {
+                String[] coachWords = segments[s].split(";");
+                for (int c = 0; c < coachWords.length && c < seats.coaches[s].length; c++) {
+                    if (coachWords[c].isEmpty()) {
+                        continue;
+                    }
+                    String[] hex = coachWords[c].split("\\.");
+                    long[] words = new long[hex.length];
+                    for (int w = 0; w < hex.length; w++) {
+                        words[w] = Long.parseUnsignedLong(hex[w], 16);
+                    }
+                    seats.coaches[s][c] = BitSet.valueOf(words);
+                }
+            }
+            seats.resize(totalSeats);
+            seats.savedVersion = seats.version;
+            return seats;
+        } catch (RuntimeException e) {
+            System.err.println("Error parsing seat map: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package util;
+
+import model.Train;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seats left on each route segment of multi-stop trains, per class and journey date
+ * A seat sold from stop i to stop j only takes segments i..j-1, so it can be sold
+ * again for the rest of the route. Each (train, class, date) has a SegmentTree, so
+ * checking and taking seats for any part of the route is O(log stops)
+ * The through-route seats (minimum over all segments) are kept in trains.dat, so
+ * searches still read one mapped counter per class; they are set again from
+ * the trees on load
+ * The seat maps are the record of which seats are taken, so on load every tree
+ * is set from its seat map's free seats per segment (and a tree without one is
+ * dropped), which undoes a booking that crashed between the two writes
+ * Each tree is kept in segments.txt as "trainNumber/class/date,seats;seats;..."
+ * Demonstrates Singleton Design Pattern
+ */
+public class SegmentInventory {
+
+    private static SegmentInventory instance;
+
+    private final TrainInventoryFile inventory;
+    private final Map<String, RouteSeats> routes = new ConcurrentHashMap<>();
+    private volatile long sweptDay;
+
+    /**
+     * Segment tree of one train, class and date
+     * Changes happen under the route's monitor; saving happens under persistLock
+     * so concurrent bookings share one write of the latest state
+     */
+    private static class RouteSeats {
+        final String key;
+        final SegmentTree segments;
+        final ReentrantLock persistLock = new ReentrantLock();
+        long version;
+        long savedVersion;
+
+        RouteSeats(String key, int[] seats) {
+            this.key = key;
+            this.segments = new SegmentTree(seats);
+        }
+
+        String toFileFormat() {
+            StringBuilder line = new StringBuilder(key).append(',');
+            int[] seats = segments.toArray();
+            for (int i = 0; i < seats.length; i++) {
+                if (i > 0) {
+                    line.append(';');
+                }
+                line.append(seats[i]);
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * @param freeBySegment - seats free per segment of every seat map, by SeatMap.keyOf
+     */
+    private SegmentInventory(TrainInventoryFile inventory, Map<String, int[]> freeBySegment) {
+        this.inventory = inventory;
+        long today = LocalDate.now().toEpochDay();
+        List<String> stale = new ArrayList<>();
+        FileUtil.forEachRecord(FileUtil.SEGMENTS_FILE, line -> {
+            RouteSeats route = parse(line);
+            if (route == null) {
+                return true;
+            }
+            int[] free = freeBySegment.get(route.key);
+            if (epochDayOf(route.key) < today || free == null || free.length < 2) {
+                stale.add(route.key);
+            } else {
+                routes.put(route.key, route);
+            }
+            return true;
+        });
+        for (String key : stale) {
+            FileUtil.deleteFromFile(FileUtil.SEGMENTS_FILE, key);
+        }
+
+        // Set every tree from the seats its seat map has taken
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, int[]> map : freeBySegment.entrySet()) {
+            int[] free = map.getValue();
+            if (free.length < 2 || epochDayOf(map.getKey()) < today) {
+                continue;
+            }
+            RouteSeats route = routes.get(map.getKey());
+            if (route == null || !Arrays.equals(route.segments.toArray(), free)) {
+                route = new RouteSeats(map.getKey(), free);
+                routes.put(route.key, route);
+                changed.add(route.toFileFormat());
+            }
+        }
+        FileUtil.appendAllToFile(FileUtil.SEGMENTS_FILE, changed);
+        for (RouteSeats route : routes.values()) {
+            publish(route);
+        }
+        sweptDay = today;
+    }
+
+    /**
+     * Get the shared segment inventory, loading segments.txt on first use
+     */
+    public static synchronized SegmentInventory getInstance() {
+        if (instance == null) {
+            instance = new SegmentInventory(TrainInventoryFile.getInstance(),
+                                            SeatMap.getInstance().getFreeSeatsBySegment());
+        }
+        return instance;
+    }
+
+    /**
+     * Seats free on every segment from stop fromStop to stop toStop on a date
+     * Dates without bookings have the whole class free
+     */
+    public int getAvailableSeats(String trainNumber, String ticketClass, String journeyDate,
+                                 int fromStop, int toStop, int classSeats) {
+        RouteSeats route = routes.get(keyOf(trainNumber, ticketClass, journeyDate));
+        if (route == null) {
+            return classSeats;
+        }
+        synchronized (route) {
+            return Math.max(0, route.segments.min(fromStop, toStop));
+        }
+    }
+
+    /**
+     * Take seats on segments fromStop..toStop-1 if every one of them has enough
+     * The date's tree is created with classSeats on each segment on its first booking
+     * @return false if some segment has fewer seats free
+     */
+    public boolean bookSeats(String trainNumber, String ticketClass, String journeyDate,
+                             int segmentCount, int classSeats, int fromStop, int toStop, int seats) {
+        return bookSeats(trainNumber, ticketClass, journeyDate, segmentCount, classSeats,
+                         fromStop, toStop, seats, true);
+    }
+
+    /**
+     * Take seats on segments fromStop..toStop-1 if every one of them has enough
+     * @param save - false to leave saving the tree to a later saveAll
+     * @return false if some segment has fewer seats free
+     */
+    public boolean bookSeats(String trainNumber, String ticketClass, String journeyDate, int segmentCount,
+                             int classSeats, int fromStop, int toStop, int seats, boolean save) {
+        sweepExpired();
+        RouteSeats route = routes.computeIfAbsent(keyOf(trainNumber, ticketClass, journeyDate),
+                key -> newRoute(key, segmentCount, classSeats));
+        synchronized (route) {
+            if (toStop > route.segments.size() || route.segments.min(fromStop, toStop) < seats) {
+                return false;
+            }
+            route.segments.add(fromStop, toStop, -seats);
+            route.version++;
+            publish(trainNumber, ticketClass, journeyDate, route);
+        }
+        if (save) {
+            save(route);
+        }
+        return true;
+    }
+
+    /**
+     * Write the latest state of several segment trees with one append to segments.txt
+     * (e.g. after a batch of bookings made with save = false)
+     * The persist locks are taken in key order, so single saves cannot write
+     * an older state after this one
+     * @param keys - "trainNumber/CLASS/date" keys, see SeatMap.keyOf
+     */
+    public void saveAll(Collection<String> keys) {
+        List<RouteSeats> changed = new ArrayList<>();
+        for (String key : new TreeSet<>(keys)) {
+            RouteSeats route = routes.get(key);
+            if (route != null) {
+                changed.add(route);
+            }
+        }
+        for (RouteSeats route : changed) {
+            route.persistLock.lock();
+        }
+        try {
+            List<String> lines = new ArrayList<>();
+            long[] versions = new long[changed.size()];
+            for (int i = 0; i < changed.size(); i++) {
+                RouteSeats route = changed.get(i);
+                synchronized (route) {
+                    versions[i] = route.version;
+                    if (route.version > route.savedVersion) {
+                        lines.add(route.toFileFormat());
+                    }
+                }
+            }
+            FileUtil.appendAllToFile(FileUtil.SEGMENTS_FILE, lines);
+            for (int i = 0; i < changed.size(); i++) {
+                changed.get(i).savedVersion = Math.max(changed.get(i).savedVersion, versions[i]);
+            }
+        } finally {
+            for (RouteSeats route : changed) {
+                route.persistLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Give seats on segments fromStop..toStop-1 back (for cancellation)
+     * @return false if the date has no bookings (e.g. it has expired)
+     */
+    public boolean releaseSeats(String trainNumber, String ticketClass, String journeyDate,
+                                int fromStop, int toStop, int seats) {
+        RouteSeats route = routes.get(keyOf(trainNumber, ticketClass, journeyDate));
+        if (route == null) {
+            return false;
+        }
+        synchronized (route) {
+            if (toStop > route.segments.size()) {
+                return false;
+            }
+            route.segments.add(fromStop, toStop, seats);
+            route.version++;
+            publish(trainNumber, ticketClass, journeyDate, route);
+        }
+        save(route);
+        return true;
+    }
+
+    /**
+     * Change the seats of a train's class on every open date; seats booked stay booked
+     * (trains.dat adjusts its through-route counters the same way)
+     */
+    public void setTotalSeats(String trainNumber, String ticketClass, int oldTotal, int newTotal) {
+        String prefix = trainNumber + "/" + ticketClass.trim().toUpperCase() + "/";
+        for (RouteSeats route : routes.values()) {
+            if (route.key.startsWith(prefix)) {
+                synchronized (route) {
+                    route.segments.add(0, route.segments.size(), newTotal - oldTotal);
+                    route.version++;
+                }
+                save(route);
+            }
+        }
+    }
+
+    /**
+     * Drop the segment trees of a deleted train
+     */
+    public void removeTrain(String trainNumber) {
+        String prefix = trainNumber + "/";
+        for (String key : routes.keySet()) {
+            if (key.startsWith(prefix) && routes.remove(key) != null) {
+                FileUtil.deleteFromFile(FileUtil.SEGMENTS_FILE, key);
+            }
+        }
+    }
+
+    /**
+     * Store the through-route seats (free on every segment) in trains.dat
+     * Called under the route's monitor, so counters are written in booking order
+     */
+    private void publish(String trainNumber, String ticketClass, String journeyDate, RouteSeats route) {
+        int through = Math.max(0, route.segments.min(0, route.segments.size()));
+        inventory.setAvailableSeats(trainNumber, Train.classIndex(ticketClass),
+                                    LocalDate.parse(journeyDate).toEpochDay(), through);
+    }
+
+    /**
+     * Store the through-route seats of a tree set on load
+     */
+    private void publish(RouteSeats route) {
+        int classEnd = route.key.lastIndexOf('/');
+        int trainEnd = route.key.lastIndexOf('/', classEnd - 1);
+        if (trainEnd < 0) {
+            return;
+        }
+        synchronized (route) {
+            publish(route.key.substring(0, trainEnd), route.key.substring(trainEnd + 1, classEnd),
+                    route.key.substring(classEnd + 1), route);
+        }
+    }
+
+    /**
+     * Drop the trees of dates that have passed, at most once a day
+     */
+    private void sweepExpired() {
+        long today = LocalDate.now().toEpochDay();
+        if (sweptDay >= today) {
+            return;
+        }
+        synchronized (this) {
+            if (sweptDay >= today) {
+                return;
+            }
+            for (String key : routes.keySet()) {
+                if (epochDayOf(key) < today && routes.remove(key) != null) {
+                    FileUtil.deleteFromFile(FileUtil.SEGMENTS_FILE, key);
+                }
+            }
+            sweptDay = today;
+        }
+    }
+
+    /**
+     * Write the latest state of a tree to segments.txt
+     * A caller whose change was already written by another caller returns at once
+     */
+    private void save(RouteSeats route) {
+        route.persistLock.lock();
+        try {
+            String line;
+            long version;
+            synchronized (route) {
+                if (route.version <= route.savedVersion) {
+                    return;
+                }
+                line = route.toFileFormat();
+                version = route.version;
+            }
+            FileUtil.writeToFile(FileUtil.SEGMENTS_FILE, line, true);
+            route.savedVersion = version;
+        } finally {
+            route.persistLock.unlock();
+        }
+    }
+
+    private static RouteSeats newRoute(String key, int segmentCount, int classSeats) {
+        int[] seats = new int[segmentCount];
+        Arrays.fill(seats, classSeats);
+        return new RouteSeats(key, seats);
+    }
+
+    private static String keyOf(String trainNumber, String ticketClass, String journeyDate) {
+        return trainNumber + "/" + ticketClass.trim().toUpperCase() + "/" + journeyDate;
+    }
+
+    /**
+     * Journey date of a key as epoch day, or Long.MIN_VALUE if it has none
+     */
+    private static long epochDayOf(String key) {
+        try {
+            return LocalDate.parse(key.substring(key.lastIndexOf('/') + 1)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private RouteSeats parse(String line) {
+        try {
+            CsvCursor fields = new CsvCursor(line);
+            if (fields.fieldCount() < 2) {
+                return null;
+            }
+            String key = fields.nextString();
+            String[] parts = fields.nextString().split(";");
+            int[] seats = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                seats[i] = Integer.parseInt(parts[i]);
+            }
+            return new RouteSeats(key, seats);
+        } catch (RuntimeException e) {
+            System.err.println("Error parsing route seats: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package util;
+
+/**
+ * Range-add / range-min segment tree over a fixed number of int values
+ * Used for seats left on each segment of a train's route: a booking from stop i
+ * to stop j is a range minimum (seats free on every segment travelled) followed
+ * by a range add of -seats, both O(log n)
+ * Not thread-safe; callers synchronize
+ */
+public class SegmentTree {
+    private final int size;
+    private final int[] min;
+    private final int[] pending;
+
+    /**
+     * Build a tree holding the given values
+     */
+    public SegmentTree(int[] values) {
+        this.size = values.length;
+        this.min = new int[4 * Math.max(1, size)];
+        this.pending = new int[4 * Math.max(1, size)];
+        build(1, 0, size - 1, values);
+    }
+
+    /**
+     * Number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Smallest value in [from, to)
+     */
+    public int min(int from, int to) {
+        return min(1, 0, size - 1, from, to - 1);
+    }
+
+    /**
+     * Add delta to every value in [from, to)
+     */
+    public void add(int from, int to, int delta) {
+        add(1, 0, size - 1, from, to - 1, delta);
+    }
+
+    /**
+     * Current values, in order
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = min(i, i + 1);
+        }
+        return values;
+    }
+
+    private void build(int node, int low, int high, int[] values) {
+        if (low == high) {
+            min[node] = values[low];
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        build(2 * node, low, mid, values);
+        build(2 * node + 1, mid + 1, high, values);
+        min[node] = Math.min(min[2 * node], min[2 * node + 1]);
+    }
+
+    private int min(int node, int low, int high, int from, int to) {
+        if (from <= low && high <= to) {
+            return min[node];
+        }
+        int mid = (low + high) >>> 1;
+        int result = Integer.MAX_VALUE;
+        if (from <= mid) {
+            result = min(2 * node, low, mid, from, to);
+        }
+        if (to > mid) {
+            result = Math.min(result, min(2 * node + 1, mid + 1, high, from, to));
+        }
+        // Values below this node carry its pending add
+        return result + pending[node];
+    }
+
+    private void add(int node, int low, int high, int from, int to, int delta) {
+        if (from <= low && high <= to) {
+            min[node] += delta;
+            pending[node] += delta;
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        if (from <= mid) {
+            add(2 * node, low, mid, from, to, delta);
+        }
+        if (to > mid) {
+            add(2 * node + 1, mid + 1, high, from, to, delta);
+        }
+        min[node] = Math.min(min[2 * node], min[2 * node + 1]) + pending[node];
+    }
+}
@@ -46,6 +46,25 @@ public class SingletonConnection {
         config.put("MAX_BOOKINGS_PER_USER", "10");
         config.put("MAX_SEATS_PER_BOOKING", "6");
         config.put("CANCELLATION_ALLOWED", "true");
+        config.put("ID_BLOCK_SIZE", "100");
+        config.put("COMPACTION_INTERVAL_SECONDS", "30");
+        config.put("COMPACTION_LOG_THRESHOLD", "1048576");
+        config.put("GROUP_COMMIT_WINDOW_MICROS", "500");
+        config.put("SEATS_PER_COACH", "72");
+        config.put("CLASS_SEAT_SHARES", "5,15,30,50");
+        config.put("BOOKING_WINDOW_DAYS", "120");
+        config.put("RAC_PLACES_PER_CLASS", "10");
+        config.put("SURGE_MODE", "false");
+        config.put("SURGE_QUEUE_CAPACITY", "1000");
+        config.put("SURGE_ADMITS_PER_SECOND", "50");
+        config.put("SURGE_BURST", "10");
+        config.put("BOOKING_THREADS", "0");
+        config.put("DEFAULT_SEGMENT_MINUTES", "120");
+        config.put("MIN_TRANSFER_MINUTES", "30");
+        config.put("JOURNEY_SEARCH_DAYS", "3");
+        config.put("MAX_JOURNEY_TRAINS", "3");
+        config.put("STATION_SUGGESTIONS", "5");
+        config.put("FUZZY_MAX_EDITS", "2");
         config.put("APP_VERSION", "1.0");
     }
     
@@ -98,6 +117,144 @@ public class SingletonConnection {
         return Integer.parseInt(config.getOrDefault("MAX_SEATS_PER_BOOKING", "6"));
     }
     
+    /**
+     * Get how many IDs are leased per allocation block
+     */
+    public int getIdBlockSize() {
+        return Integer.parseInt(config.getOrDefault("ID_BLOCK_SIZE", "100"));
+    }
+    
+    /**
+     * Get how often the background compactor checks the logs
+     */
+    public int getCompactionIntervalSeconds() {
+        return Integer.parseInt(config.getOrDefault("COMPACTION_INTERVAL_SECONDS", "30"));
+    }
+    
+    /**
+     * Get the log size in bytes that triggers compaction of a data file
+     */
+    public long getCompactionLogThreshold() {
+        return Long.parseLong(config.getOrDefault("COMPACTION_LOG_THRESHOLD", "1048576"));
+    }
+    
+    /**
+     * Get the number of berths in one coach (for new seat maps)
+     */
+    public int getSeatsPerCoach() {
+        return Integer.parseInt(config.getOrDefault("SEATS_PER_COACH", "72"));
+    }
+    
+    /**
+     * Get each class's share of a train's seats (1A, 2A, 3A, SL order)
+     */
+    public int[] getClassSeatShares() {
+        String[] parts = config.getOrDefault("CLASS_SEAT_SHARES", "5,15,30,50").split(",");
+        int[] shares = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            shares[i] = Integer.parseInt(parts[i].trim());
+        }
+        return shares;
+    }
+    
+    /**
+     * Get how many days ahead (including today) a journey can be booked
+     */
+    public int getBookingWindowDays() {
+        return Integer.parseInt(config.getOrDefault("BOOKING_WINDOW_DAYS", "120"));
+    }
+    
+    /**
+     * Get how many of the first waitlisted tickets of a class are RAC
+     */
+    public int getRacPlacesPerClass() {
+        return Integer.parseInt(config.getOrDefault("RAC_PLACES_PER_CLASS", "10"));
+    }
+    
+    /**
+     * Check if every train's bookings go through the surge gate
+     */
+    public boolean isSurgeMode() {
+        return Boolean.parseBoolean(config.getOrDefault("SURGE_MODE", "false"));
+    }
+    
+    /**
+     * Get how many booking requests may wait in one train's surge line
+     */
+    public int getSurgeQueueCapacity() {
+        return Integer.parseInt(config.getOrDefault("SURGE_QUEUE_CAPACITY", "1000"));
+    }
+    
+    /**
+     * Get how many booking requests per second leave a train's surge line
+     */
+    public double getSurgeAdmitsPerSecond() {
+        return Double.parseDouble(config.getOrDefault("SURGE_ADMITS_PER_SECOND", "50"));
+    }
+    
+    /**
+     * Get how many booking requests a train's surge line may admit at once after a quiet spell
+     */
+    public int getSurgeBurst() {
+        return Integer.parseInt(config.getOrDefault("SURGE_BURST", "10"));
+    }
+    
+    /**
+     * Get how many platform threads run asynchronous bookings (0 = a virtual thread per booking)
+     */
+    public int getBookingThreads() {
+        return Integer.parseInt(config.getOrDefault("BOOKING_THREADS", "0"));
+    }
+    
+    /**
+     * Get the minutes a train is assumed to take per segment when it has no timetable
+     */
+    public int getDefaultSegmentMinutes() {
+        return Integer.parseInt(config.getOrDefault("DEFAULT_SEGMENT_MINUTES", "120"));
+    }
+    
+    /**
+     * Get the shortest time in minutes for changing trains at a station
+     */
+    public int getMinTransferMinutes() {
+        return Integer.parseInt(config.getOrDefault("MIN_TRANSFER_MINUTES", "30"));
+    }
+    
+    /**
+     * Get over how many days, from the journey date, the journey planner follows trains
+     */
+    public int getJourneySearchDays() {
+        return Integer.parseInt(config.getOrDefault("JOURNEY_SEARCH_DAYS", "3"));
+    }
+    
+    /**
+     * Get the most trains a planned journey may use
+     */
+    public int getMaxJourneyTrains() {
+        return Integer.parseInt(config.getOrDefault("MAX_JOURNEY_TRAINS", "3"));
+    }
+    
+    /**
+     * Get how many stations are suggested for a partly typed name
+     */
+    public int getStationSuggestions() {
+        return Integer.parseInt(config.getOrDefault("STATION_SUGGESTIONS", "5"));
+    }
+    
+    /**
+     * Get the most typing mistakes (edits) a misspelled station name may have and still match
+     */
+    public int getFuzzyMaxEdits() {
+        return Integer.parseInt(config.getOrDefault("FUZZY_MAX_EDITS", "2"));
+    }
+    
+    /**
+     * Get how long the group commit flusher waits for more writes before one fsync
+     */
+    public long getGroupCommitWindowMicros() {
+        return Long.parseLong(config.getOrDefault("GROUP_COMMIT_WINDOW_MICROS", "500"));
+    }
+    
     /**
      * Check if cancellation is allowed
      */
@@ -0,0 +1,381 @@
+package util;
+
+import model.Train;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Dictionary of every station served by a train, for completing partly typed names
+ * Stations are kept case-folded in a radix trie (each edge holds a run of characters,
+ * so a node branches only where names differ). Every node keeps its best stations,
+ * ranked by how many trains stop there, so a completion walks the prefix and returns
+ * that node's list without visiting the rest of the subtree or allocating results
+ * Nodes are never changed: adding or removing a train copies the nodes on the path
+ * of each of its stations and publishes a new root, so lookups need no lock
+ * Misspelled names are matched by walking the same trie as a Levenshtein automaton:
+ * each character on the way down adds one row of the edit-distance table, and a
+ * branch is left as soon as every entry of its row is over the limit, so only names
+ * that start almost like the typed one are looked at
+ * Demonstrates Singleton Design Pattern
+ */
+public class StationDictionary {
+
+    private static StationDictionary instance;
+
+    private final int suggestions;
+    private final int maxEdits;
+    private volatile Node root;
+
+    /**
+     * A station name as first spelled, and the number of trains stopping there
+     */
+    private static class Station {
+        final String name;
+        final String key;
+        final int trains;
+
+        Station(String name, String key, int trains) {
+            this.name = name;
+            this.key = key;
+            this.trains = trains;
+        }
+
+        boolean ranksBefore(Station other) {
+            return trains != other.trains ? trains > other.trains : key.compareTo(other.key) < 0;
+        }
+    }
+
+    /**
+     * Trie node; label is the edge from its parent, children are sorted by first character
+     */
+    private static class Node {
+        final String label;
+        final Node[] children;
+        final Station station;
+        final Station[] best;
+        final List<String> names;
+
+        Node(String label, Node[] children, Station station, Station[] best) {
+            this.label = label;
+            this.children = children;
+            this.station = station;
+            this.best = best;
+            String[] bestNames = new String[best.length];
+            for (int i = 0; i < best.length; i++) {
+                bestNames[i] = best[i].name;
+            }
+            this.names = Collections.unmodifiableList(Arrays.asList(bestNames));
+        }
+
+        Node withLabel(String newLabel) {
+            return new Node(newLabel, children, station, best);
+        }
+    }
+
+    private StationDictionary(Collection<Train> trains) {
+        SingletonConnection config = SingletonConnection.getInstance();
+        this.suggestions = Math.max(1, config.getStationSuggestions());
+        this.maxEdits = Math.max(0, config.getFuzzyMaxEdits());
+        this.root = node("", new Node[0], null, true);
+        for (Train train : trains) {
+            addTrain(train);
+        }
+    }
+
+    /**
+     * Get the shared dictionary, built from the route index's trains on first use
+     */
+    public static synchronized StationDictionary getInstance() {
+        if (instance == null) {
+            instance = new StationDictionary(RouteIndex.getInstance().getTrains());
+        }
+        return instance;
+    }
+
+    /**
+     * Count a new train at every station on its route
+     */
+    public synchronized void addTrain(Train train) {
+        for (String station : stationsOf(train)) {
+            root = update(root, fold(station), 0, station.trim(), 1, true);
+        }
+    }
+
+    /**
+     * Stop counting a deleted train; stations no train stops at any more are dropped
+     */
+    public synchronized void removeTrain(Train train) {
+        for (String station : stationsOf(train)) {
+            root = update(root, fold(station), 0, station.trim(), -1, true);
+        }
+    }
+
+    /**
+     * Stations starting with a prefix (any case), most trains first
+     * The list is shared and unmodifiable; an empty prefix gives the busiest stations
+     * Trailing spaces are kept, as they are part of what has been typed ("Lihi " for "Lihi Junction")
+     */
+    public List<String> complete(String prefix) {
+        Node node = find(prefix == null ? "" : prefix.stripLeading().toLowerCase(Locale.ROOT), true);
+        return node == null ? Collections.emptyList() : node.names;
+    }
+
+    /**
+     * A station's name as spelled in the timetable, or null if no train stops there
+     */
+    public String lookup(String station) {
+        Node node = station == null ? null : find(fold(station), false);
+        return node == null || node.station == null ? null : node.station.name;
+    }
+
+    /**
+     * Stations within a few typing mistakes of a name (about one per three letters, at
+     * most FUZZY_MAX_EDITS), closest first and then by most trains
+     */
+    public List<String> closest(String station) {
+        List<String> names = new ArrayList<>();
+        if (station == null) {
+            return names;
+        }
+        String key = fold(station);
+        int limit = Math.min(maxEdits, (key.length() + 2) / 3);
+        // rows[d]: edit distances from the first d characters of a path to every prefix of key
+        int[][] rows = new int[key.length() + limit + 1][key.length() + 1];
+        for (int i = 0; i <= key.length(); i++) {
+            rows[0][i] = i;
+        }
+        List<Station> matches = new ArrayList<>();
+        List<Integer> distances = new ArrayList<>();
+        collectClosest(root, 0, key, limit, rows, matches, distances);
+        for (int i = 0; i < matches.size() && i < suggestions; i++) {
+            names.add(matches.get(i).name);
+        }
+        return names;
+    }
+
+    /**
+     * Number of trains stopping at a station
+     */
+    public int getTrainCount(String station) {
+        Node node = station == null ? null : find(fold(station), false);
+        return node == null || node.station == null ? 0 : node.station.trains;
+    }
+
+    /**
+     * Node for a key: the one where it ends, or for a prefix the first one whose path covers it
+     */
+    private Node find(String key, boolean prefix) {
+        Node node = root;
+        int at = 0;
+        while (at < key.length()) {
+            Node child = child(node.children, key.charAt(at));
+            if (child == null) {
+                return null;
+            }
+            String label = child.label;
+            int matched = 0;
+            while (matched < label.length() && at < key.length()) {
+                if (label.charAt(matched) != key.charAt(at)) {
+                    return null;
+                }
+                matched++;
+                at++;
+            }
+            if (matched < label.length() && !prefix) {
+                return null;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Copy of a node (whose label matched key up to at) with a station's train count changed
+     * @return the new node, or null if nothing is left under it
+     */
+    private Node update(Node node, String key, int at, String name, int delta, boolean isRoot) {
+        if (at == key.length()) {
+            Station station = node.station;
+            int trains = (station == null ? 0 : station.trains) + delta;
+            Station updated = trains <= 0 ? null :
+                              new Station(station == null ? name : station.name, key, trains);
+            return node(node.label, node.children, updated, isRoot);
+        }
+
+        Node[] children = node.children;
+        int index = childIndex(children, key.charAt(at));
+        Node updatedChild;
+        if (index < 0) {
+            if (delta < 0) {
+                return node;
+            }
+            updatedChild = node(key.substring(at), new Node[0], new Station(name, key, delta), false);
+        } else {
+            Node child = children[index];
+            int common = 0;
+            while (common < child.label.length() && at + common < key.length() &&
+                   child.label.charAt(common) == key.charAt(at + common)) {
+                common++;
+            }
+            if (common == child.label.length()) {
+                updatedChild = update(child, key, at + common, name, delta, false);
+            } else if (delta < 0) {
+                return node;
+            } else {
+                // Split the edge where the key leaves it
+                Node tail = child.withLabel(child.label.substring(common));
+                Node split = new Node(child.label.substring(0, common), new Node[] {tail}, null, tail.best);
+                updatedChild = update(split, key, at + common, name, delta, false);
+            }
+        }
+
+        Node[] updatedChildren;
+        if (index < 0) {
+            int insertAt = -index - 1;
+            updatedChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, updatedChildren, 0, insertAt);
+            updatedChildren[insertAt] = updatedChild;
+            System.arraycopy(children, insertAt, updatedChildren, insertAt + 1, children.length - insertAt);
+        } else if (updatedChild == null) {
+            updatedChildren = new Node[children.length - 1];
+            System.arraycopy(children, 0, updatedChildren, 0, index);
+            System.arraycopy(children, index + 1, updatedChildren, index, children.length - index - 1);
+        } else {
+            updatedChildren = children.clone();
+            updatedChildren[index] = updatedChild;
+        }
+        return node(node.label, updatedChildren, node.station, isRoot);
+    }
+
+    /**
+     * Build a node, ranking its best stations from its own and its children's;
+     * an empty node is dropped and a node with one child and no station merges into it
+     */
+    private Node node(String label, Node[] children, Station station, boolean isRoot) {
+        if (!isRoot && station == null) {
+            if (children.length == 0) {
+                return null;
+            }
+            if (children.length == 1) {
+                return children[0].withLabel(label + children[0].label);
+            }
+        }
+        Station[] best = new Station[suggestions];
+        int count = 0;
+        if (station != null) {
+            best[count++] = station;
+        }
+        for (Node child : children) {
+            for (Station candidate : child.best) {
+                if (count == suggestions && !candidate.ranksBefore(best[count - 1])) {
+                    break;
+                }
+                int position = count < suggestions ? count++ : count - 1;
+                while (position > 0 && candidate.ranksBefore(best[position - 1])) {
+                    best[position] = best[position - 1];
+                    position--;
+                }
+                best[position] = candidate;
+            }
+        }
+        return new Node(label, children, station, Arrays.copyOf(best, count));
+    }
+
+    /**
+     * Add the stations under a node (reached after depth characters) that are within
+     * limit edits of key, keeping matches sorted by distance and then by rank
+     */
+    private static void collectClosest(Node node, int depth, String key, int limit, int[][] rows,
+                                       List<Station> matches, List<Integer> distances) {
+        int distance = Math.abs(depth - key.length()) > limit ? limit + 1 : rows[depth][key.length()];
+        if (node.station != null && distance <= limit) {
+            int at = matches.size();
+            while (at > 0 && (distances.get(at - 1) > distance ||
+                   distances.get(at - 1) == distance && node.station.ranksBefore(matches.get(at - 1)))) {
+                at--;
+            }
+            matches.add(at, node.station);
+            distances.add(at, distance);
+        }
+        for (Node child : node.children) {
+            int reached = depth;
+            boolean close = true;
+            for (int k = 0; k < child.label.length() && close; k++) {
+                if (reached + 1 == rows.length) {
+                    close = false;
+                    break;
+                }
+                int[] previous = rows[reached];
+                int[] current = rows[++reached];
+                char c = child.label.charAt(k);
+                // Only cells within limit of the diagonal can be within limit; the ones
+                // just outside the band are set to limit + 1 for the next row to read
+                int low = Math.max(1, reached - limit);
+                int high = Math.min(key.length(), reached + limit);
+                current[low - 1] = low == 1 ? reached : limit + 1;
+                if (high < key.length()) {
+                    current[high + 1] = limit + 1;
+                }
+                int rowMinimum = Math.min(limit + 1, current[low - 1]);
+                for (int i = low; i <= high; i++) {
+                    int substitution = previous[i - 1] + (key.charAt(i - 1) == c ? 0 : 1);
+                    current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+                    rowMinimum = Math.min(rowMinimum, current[i]);
+                }
+                close = rowMinimum <= limit;
+            }
+            if (close) {
+                collectClosest(child, reached, key, limit, rows, matches, distances);
+            }
+        }
+    }
+
+    private static Node child(Node[] children, char first) {
+        int index = childIndex(children, first);
+        return index < 0 ? null : children[index];
+    }
+
+    /**
+     * Index of the child starting with a character, or -(insertion point) - 1
+     */
+    private static int childIndex(Node[] children, char first) {
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char c = children[middle].label.charAt(0);
+            if (c < first) {
+                low = middle + 1;
+            } else if (c > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Stations on a train's route, each once
+     */
+    private static List<String> stationsOf(Train train) {
+        List<String> stations = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String stop : train.getStops()) {
+            if (!stop.trim().isEmpty() && seen.add(fold(stop))) {
+                stations.add(stop);
+            }
+        }
+        return stations;
+    }
+
+    private static String fold(String station) {
+        return station.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,33 @@
+package util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks picked by key hash (e.g. one stripe per train number)
+ * Work on keys in different stripes runs in parallel, work on the same key is
+ * serialized, and memory stays bounded however many keys there are
+ */
+public class StripedLock {
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param stripes - number of locks, rounded up to a power of two
+     */
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Get the lock guarding a key
+     */
+    public Lock get(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+}
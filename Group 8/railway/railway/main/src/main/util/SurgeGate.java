@@ -0,0 +1,293 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for booking surges (Tatkal openings, flash sales)
+ * In surge mode each train has a bounded line of booking requests. Requests leave
+ * the line in arrival order at the rate of a token bucket, so storage only sees the
+ * admitted rate however many requests arrive at once; when the line is full new
+ * requests are turned away straight away (load shedding)
+ * Demonstrates Singleton Design Pattern
+ */
+public class SurgeGate {
+
+    private static SurgeGate instance;
+
+    private final int capacity;
+    private final double admitsPerSecond;
+    private final int burst;
+    private final boolean allTrains;
+    private final Set<String> surgeTrains = ConcurrentHashMap.newKeySet();
+    private final Map<String, TrainLine> lines = new ConcurrentHashMap<>();
+
+    /**
+     * Line metrics of one train
+     */
+    public static class Stats {
+        private long admitted;
+        private long shed;
+        private int queueDepth;
+        private int maxQueueDepth;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        public synchronized long getAdmitted() {
+            return admitted;
+        }
+
+        public synchronized long getShed() {
+            return shed;
+        }
+
+        public synchronized int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public synchronized int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public synchronized double getAverageWaitMillis() {
+            return admitted == 0 ? 0 : totalWaitNanos / 1e6 / admitted;
+        }
+
+        public synchronized double getMaxWaitMillis() {
+            return maxWaitNanos / 1e6;
+        }
+
+        private synchronized void recordDepth(int depth) {
+            queueDepth = depth;
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+
+        private synchronized void recordAdmit(long waitNanos, int depth) {
+            admitted++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            queueDepth = depth;
+        }
+
+        private synchronized void recordShed() {
+            shed++;
+        }
+    }
+
+    /**
+     * A request's place in a train's line
+     */
+    public static class Admission {
+        private final TrainLine line;
+        private final long ticket;
+        private final long joinedAt;
+        private final int position;
+
+        private Admission(TrainLine line, long ticket, long joinedAt, int position) {
+            this.line = line;
+            this.ticket = ticket;
+            this.joinedAt = joinedAt;
+            this.position = position;
+        }
+
+        /**
+         * Place in line when the request joined (1 for the first), or 0 if it was admitted at once
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * Wait for the request's turn
+         * @return false if the thread was interrupted (the request leaves the line)
+         */
+        public boolean await() {
+            return position == 0 || line.await(ticket, joinedAt);
+        }
+    }
+
+    /**
+     * Tickets are numbered in arrival order; nextAdmit is the first not yet admitted
+     * Waiting uses a Condition rather than a monitor so waiting virtual threads
+     * do not hold on to their carrier threads
+     */
+    private static class TrainLine {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition turn = lock.newCondition();
+        private final int capacity;
+        private final double tokensPerNano;
+        private final int burst;
+        private final Stats stats = new Stats();
+        private final Set<Long> abandoned = new HashSet<>();
+        private long nextTicket;
+        private long nextAdmit;
+        private double tokens;
+        private long refilledAt;
+
+        TrainLine(int capacity, double admitsPerSecond, int burst) {
+            this.capacity = capacity;
+            this.tokensPerNano = admitsPerSecond / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        Admission join() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                skipAbandoned();
+                if (nextTicket == nextAdmit && takeToken(now)) {
+                    nextTicket++;
+                    nextAdmit++;
+                    stats.recordAdmit(0, 0);
+                    return new Admission(this, nextTicket - 1, now, 0);
+                }
+                if (nextTicket - nextAdmit >= capacity) {
+                    stats.recordShed();
+                    return null;
+                }
+                long ticket = nextTicket++;
+                stats.recordDepth(depth());
+                return new Admission(this, ticket, now, (int) (ticket - nextAdmit + 1));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean await(long ticket, long joinedAt) {
+            lock.lock();
+            try {
+                while (true) {
+                    skipAbandoned();
+                    if (ticket == nextAdmit) {
+                        long now = System.nanoTime();
+                        if (takeToken(now)) {
+                            nextAdmit++;
+                            stats.recordAdmit(now - joinedAt, depth());
+                            turn.signalAll();
+                            return true;
+                        }
+                        long nanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+                        turn.awaitNanos(Math.max(nanos, 1));
+                    } else {
+                        turn.await();
+                    }
+                }
+            } catch (InterruptedException e) {
+                abandoned.add(ticket);
+                skipAbandoned();
+                stats.recordDepth(depth());
+                turn.signalAll();
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Refill the bucket for the time passed and take one token if there is one
+         */
+        private boolean takeToken(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipAbandoned() {
+            while (abandoned.remove(nextAdmit)) {
+                nextAdmit++;
+            }
+        }
+
+        private int depth() {
+            return (int) (nextTicket - nextAdmit) - abandoned.size();
+        }
+    }
+
+    private SurgeGate(int capacity, double admitsPerSecond, int burst, boolean allTrains) {
+        this.capacity = capacity;
+        this.admitsPerSecond = admitsPerSecond;
+        this.burst = burst;
+        this.allTrains = allTrains;
+    }
+
+    /**
+     * Get the shared gate, with limits from the configuration
+     */
+    public static synchronized SurgeGate getInstance() {
+        if (instance == null) {
+            SingletonConnection config = SingletonConnection.getInstance();
+            instance = new SurgeGate(config.getSurgeQueueCapacity(), config.getSurgeAdmitsPerSecond(),
+                                     config.getSurgeBurst(), config.isSurgeMode());
+        }
+        return instance;
+    }
+
+    /**
+     * Check if booking requests for a train go through the gate
+     */
+    public boolean isSurgeMode(String trainNumber) {
+        return allTrains || surgeTrains.contains(trainNumber);
+    }
+
+    /**
+     * Turn surge mode on or off for one train (e.g. when its Tatkal quota opens)
+     */
+    public void setSurgeMode(String trainNumber, boolean on) {
+        if (on) {
+            surgeTrains.add(trainNumber);
+        } else {
+            surgeTrains.remove(trainNumber);
+        }
+    }
+
+    /**
+     * Put a booking request in its train's line
+     * @return its admission (call await() before booking), or null if the line is full
+     */
+    public Admission join(String trainNumber) {
+        return lines.computeIfAbsent(trainNumber,
+                key -> new TrainLine(capacity, admitsPerSecond, burst)).join();
+    }
+
+    /**
+     * Get the line metrics of a train, or null if it never had a surge
+     */
+    public Stats getStats(String trainNumber) {
+        TrainLine line = lines.get(trainNumber);
+        return line == null ? null : line.stats;
+    }
+
+    /**
+     * Display limits and line metrics of every train that had a surge
+     */
+    public void displayStats() {
+        System.out.println("=== Surge Mode ===");
+        System.out.println("All trains: " + (allTrains ? "on" : "off"));
+        List<String> trains = new ArrayList<>(surgeTrains);
+        System.out.println("Trains in surge mode: " + (trains.isEmpty() ? "none" : String.join(", ", trains)));
+        System.out.println("Limits: line of " + capacity + ", " + admitsPerSecond +
+                           " bookings/second, burst of " + burst);
+        for (Map.Entry<String, TrainLine> entry : lines.entrySet()) {
+            Stats stats = entry.getValue().stats;
+            System.out.println("Train " + entry.getKey());
+            System.out.println("  Queue depth: " + stats.getQueueDepth() + " (max " + stats.getMaxQueueDepth() + ")");
+            System.out.println("  Admitted: " + stats.getAdmitted() + ", shed: " + stats.getShed());
+            System.out.printf("  Wait: %.1f ms average, %.1f ms max%n",
+                              stats.getAverageWaitMillis(), stats.getMaxWaitMillis());
+        }
+        System.out.println("==================");
+    }
+}
@@ -0,0 +1,611 @@
+package util;
+
+import model.Train;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory-mapped seat inventory for trains (trains.dat)
+ * Every train has one fixed-width binary record, so seat counters are read and
+ * changed in place at a known offset without parsing or rewriting trains.txt
+ * This file is authoritative for seat counts; trains.txt keeps the train details
+ *
+ * Each ticket class (1A, 2A, 3A, SL in that order) has its own pool of seats.
+ * A train's total is split between the classes by the configured class shares
+ *
+ * Seats are sold per journey date over a rolling booking window (today and
+ * the next BOOKING_WINDOW_DAYS - 1 days). A record holds one day slot per day
+ * of the window, used as a ring: the slot of a date is stamped with that date
+ * the first time it is booked, and a slot whose stamp has expired is reset to
+ * the class totals when its next date is opened. So the file grows with the
+ * window and the number of trains, never with booking history
+ *
+ * Seat counters are changed lock-free with compare-and-set directly on the
+ * mapped ints, so bookings never block, even on one popular train. Adding,
+ * removing, resizing and opening a day are synchronized; a resize maps the
+ * same file pages again, so updates made through an older mapping are not lost
+ *
+ * The seat maps (SeatMap, kept in seatmaps.txt through the log with group
+ * commit) record which seats are taken, so the date counters here are only a
+ * cache of them: they are not flushed booking by booking, and on every start
+ * the counters of the dates in the window are set from the seat maps. That costs
+ * trains x window days, however long the booking history, and keeps counters
+ * and seat numbers in agreement after a crash. Train totals live only here, so
+ * adding, removing and resizing a train flush the file
+ *
+ * Layout: header [magic, version, recordSize, recordCount]
+ *         record [trainNumber (16 bytes), flags, reserved, classTotal x4,
+ *                 reserved (8 bytes), day x window]
+ *         day    [epochDay + 1 (0 = never opened), classAvailable x4]
+ * Files of an older version or another window size are converted on open
+ */
+public class TrainInventoryFile {
+    public static final int MAX_TRAIN_NUMBER_LENGTH = 16;
+    public static final int CLASS_COUNT = 4;
+
+    private static final int MAGIC = 0x5452494E; // "TRIN"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+    private static final int FLAGS_OFFSET = 16;
+    private static final int CLASS_TOTAL_OFFSET = 24;
+    private static final int DAYS_OFFSET = 48;
+    private static final int DAY_SIZE = 20;
+    private static final int DAY_AVAILABLE_OFFSET = 4;
+    private static final int FLAG_LIVE = 1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int V1_TOTAL_OFFSET = 16;
+    private static final int V1_FLAGS_OFFSET = 24;
+    private static final VarHandle COUNTER =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static TrainInventoryFile instance;
+
+    private final String filename;
+    private final int[] classShares;
+    private final int windowDays;
+    private final int recordSize;
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int capacity;
+    private int recordCount;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private TrainInventoryFile(String filename, int[] classShares, int windowDays) {
+        this.filename = filename;
+        this.classShares = classShares;
+        this.windowDays = windowDays;
+        this.recordSize = DAYS_OFFSET + windowDays * DAY_SIZE;
+    }
+
+    /**
+     * Get the shared inventory, migrating from trains.txt on first run and
+     * setting the seat counters from the seat maps on every run
+     */
+    public static synchronized TrainInventoryFile getInstance() {
+        if (instance == null) {
+            SingletonConnection config = SingletonConnection.getInstance();
+            TrainInventoryFile inventory = new TrainInventoryFile(FileUtil.TRAIN_INVENTORY_FILE,
+                    config.getClassSeatShares(), config.getBookingWindowDays());
+            boolean migrate = !new File(FileUtil.TRAIN_INVENTORY_FILE).exists();
+            inventory.open();
+            if (migrate) {
+                inventory.migrateFromCsv();
+            }
+            inventory.setFromSeatMaps(SeatMap.getInstance().getFreeSeatsBySegment());
+            inventory.force();
+            instance = inventory;
+        }
+        return instance;
+    }
+
+    /**
+     * Open an inventory file of its own, e.g. a scratch file for a stress run
+     * Nothing is migrated or set from the seat maps
+     */
+    static TrainInventoryFile open(String filename, int[] classShares, int windowDays) {
+        TrainInventoryFile inventory = new TrainInventoryFile(filename, classShares, windowDays);
+        inventory.open();
+        return inventory;
+    }
+
+    /**
+     * Number of days that can be booked, starting today
+     */
+    public int getWindowDays() {
+        return windowDays;
+    }
+
+    /**
+     * Check if a journey date (as epoch day) is inside the booking window
+     */
+    public boolean isBookable(long epochDay) {
+        long today = LocalDate.now().toEpochDay();
+        return epochDay >= today && epochDay < today + windowDays;
+    }
+
+    /**
+     * Check if a train has an inventory record
+     */
+    public boolean contains(String trainNumber) {
+        return slots.containsKey(trainNumber);
+    }
+
+    /**
+     * Get available seats over all classes on a date, or -1 if the train is unknown
+     */
+    public int getAvailableSeats(String trainNumber, long epochDay) {
+        if (!slots.containsKey(trainNumber)) {
+            return -1;
+        }
+        int sum = 0;
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            sum += Math.max(0, getAvailableSeats(trainNumber, c, epochDay));
+        }
+        return sum;
+    }
+
+    /**
+     * Get total seats over all classes, or -1 if the train is unknown
+     */
+    public int getTotalSeats(String trainNumber) {
+        Integer slot = slots.get(trainNumber);
+        if (slot == null) {
+            return -1;
+        }
+        MappedByteBuffer mapped = buffer;
+        int sum = 0;
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            sum += (int) COUNTER.getVolatile(mapped, totalAt(slot, c));
+        }
+        return sum;
+    }
+
+    /**
+     * Get available seats of one class on a date, or -1 if the train is unknown
+     * Dates outside the booking window have no seats to sell
+     */
+    public int getAvailableSeats(String trainNumber, int classIndex, long epochDay) {
+        Integer slot = slots.get(trainNumber);
+        if (slot == null || !isClass(classIndex)) {
+            return -1;
+        }
+        if (!isBookable(epochDay)) {
+            return 0;
+        }
+        MappedByteBuffer mapped = buffer;
+        int day = dayAt(slot, epochDay);
+        if ((int) COUNTER.getVolatile(mapped, day) != stampOf(epochDay)) {
+            // Not opened yet: the whole class is free
+            return (int) COUNTER.getVolatile(mapped, totalAt(slot, classIndex));
+        }
+        return (int) COUNTER.getVolatile(mapped, day + DAY_AVAILABLE_OFFSET + classIndex * 4);
+    }
+
+    /**
+     * Get total seats of one class, or -1 if the train is unknown
+     */
+    public int getTotalSeats(String trainNumber, int classIndex) {
+        Integer slot = slots.get(trainNumber);
+        return slot == null || !isClass(classIndex) ? -1 :
+                (int) COUNTER.getVolatile(buffer, totalAt(slot, classIndex));
+    }
+
+    /**
+     * Take seats of one class on a date from its counter in place
+     * (compare-and-set, never blocks except to open a new date)
+     * @return false if the train, class or date is not bookable or the class has too few seats
+     */
+    public boolean bookSeats(String trainNumber, int classIndex, long epochDay, int seats) {
+        Integer slot = slots.get(trainNumber);
+        if (slot == null || !isClass(classIndex) || !isBookable(epochDay)) {
+            return false;
+        }
+        int day = dayAt(slot, epochDay);
+        MappedByteBuffer mapped = buffer;
+        if ((int) COUNTER.getVolatile(mapped, day) != stampOf(epochDay)) {
+            if (!openDay(slot, epochDay)) {
+                return false;
+            }
+            mapped = buffer;
+        }
+        int position = day + DAY_AVAILABLE_OFFSET + classIndex * 4;
+        while (true) {
+            int available = (int) COUNTER.getVolatile(mapped, position);
+            if (available < seats) {
+                return false;
+            }
+            if (COUNTER.compareAndSet(mapped, position, available, available - seats)) {
+                break;
+            }
+        }
+        if ((int) COUNTER.getVolatile(mapped, day) != stampOf(epochDay)) {
+            // The slot moved on to another date meanwhile; give the seats back to it
+            addCapped(mapped, position, totalAt(slot, classIndex), seats);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Give seats of one class on a date back to its counter, capped at the class total
+     * (compare-and-set); seats of a date that has expired are not given back
+     */
+    public boolean releaseSeats(String trainNumber, int classIndex, long epochDay, int seats) {
+        Integer slot = slots.get(trainNumber);
+        if (slot == null || !isClass(classIndex) || epochDay < LocalDate.now().toEpochDay()) {
+            return false;
+        }
+        int day = dayAt(slot, epochDay);
+        MappedByteBuffer mapped = buffer;
+        if ((int) COUNTER.getVolatile(mapped, day) != stampOf(epochDay)) {
+            return false;
+        }
+        addCapped(mapped, day + DAY_AVAILABLE_OFFSET + classIndex * 4,
+                  totalAt(slot, classIndex), seats);
+        return true;
+    }
+
+    /**
+     * Overwrite the available seats of one class on a date (opening the date if needed)
+     * For counters kept by another structure, e.g. the through-route seats of a
+     * multi-stop train, which the caller keeps in step under its own lock
+     */
+    public boolean setAvailableSeats(String trainNumber, int classIndex, long epochDay, int seats) {
+        Integer slot = slots.get(trainNumber);
+        if (slot == null || !isClass(classIndex) || !isBookable(epochDay)) {
+            return false;
+        }
+        int day = dayAt(slot, epochDay);
+        if ((int) COUNTER.getVolatile(buffer, day) != stampOf(epochDay) && !openDay(slot, epochDay)) {
+            return false;
+        }
+        COUNTER.setVolatile(buffer, day + DAY_AVAILABLE_OFFSET + classIndex * 4, seats);
+        return true;
+    }
+
+    /**
+     * Add (or reset) the inventory record of a train, with every date unbooked
+     * The seats are split between the classes by the configured shares
+     */
+    public synchronized void addTrain(String trainNumber, int totalSeats) {
+        putTrain(trainNumber, splitSeats(totalSeats));
+        force();
+    }
+
+    /**
+     * Change total seats, splitting the new total between the classes
+     * Seats already booked on an open date stay booked
+     */
+    public synchronized boolean setTotalSeats(String trainNumber, int totalSeats) {
+        Integer slot = slots.get(trainNumber);
+        if (slot == null) {
+            return false;
+        }
+        int[] classTotals = splitSeats(totalSeats);
+        long today = LocalDate.now().toEpochDay();
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            int oldTotal = (int) COUNTER.getVolatile(buffer, totalAt(slot, c));
+            COUNTER.setVolatile(buffer, totalAt(slot, c), classTotals[c]);
+            for (int d = 0; d < windowDays; d++) {
+                int day = offsetOf(slot) + DAYS_OFFSET + d * DAY_SIZE;
+                if ((int) COUNTER.getVolatile(buffer, day) - 1L < today) {
+                    continue;
+                }
+                int position = day + DAY_AVAILABLE_OFFSET + c * 4;
+                while (true) {
+                    int available = (int) COUNTER.getVolatile(buffer, position);
+                    int booked = Math.max(0, oldTotal - available);
+                    int adjusted = Math.max(0, classTotals[c] - booked);
+                    if (COUNTER.compareAndSet(buffer, position, available, adjusted)) {
+                        break;
+                    }
+                }
+            }
+        }
+        force();
+        return true;
+    }
+
+    /**
+     * Remove the record of a train; its slot is reused by the next added train
+     */
+    public synchronized boolean removeTrain(String trainNumber) {
+        Integer slot = slots.remove(trainNumber);
+        if (slot == null) {
+            return false;
+        }
+        COUNTER.setVolatile(buffer, offsetOf(slot) + FLAGS_OFFSET, 0);
+        freeSlots.push(slot);
+        force();
+        return true;
+    }
+
+    /**
+     * Flush dirty pages of the mapping to disk
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Split a train's seats between the classes by their configured shares
+     * (rounding leftovers go to the last class)
+     */
+    public int[] splitSeats(int totalSeats) {
+        int shareSum = 0;
+        for (int share : classShares) {
+            shareSum += share;
+        }
+        int[] classTotals = new int[CLASS_COUNT];
+        int assigned = 0;
+        for (int c = 0; c < CLASS_COUNT - 1; c++) {
+            classTotals[c] = (int) ((long) totalSeats * classShares[c] / shareSum);
+            assigned += classTotals[c];
+        }
+        classTotals[CLASS_COUNT - 1] = totalSeats - assigned;
+        return classTotals;
+    }
+
+    /**
+     * Stamp a day slot with a new date and reset its counters to the class totals
+     * @return false if the slot already holds a later date
+     */
+    private synchronized boolean openDay(int slot, long epochDay) {
+        int day = dayAt(slot, epochDay);
+        int stamp = (int) COUNTER.getVolatile(buffer, day);
+        if (stamp == stampOf(epochDay)) {
+            return true;
+        }
+        if (stamp > stampOf(epochDay)) {
+            return false;
+        }
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            COUNTER.setVolatile(buffer, day + DAY_AVAILABLE_OFFSET + c * 4,
+                                (int) COUNTER.getVolatile(buffer, totalAt(slot, c)));
+        }
+        // Publish the date only once its counters are reset
+        COUNTER.setVolatile(buffer, day, stampOf(epochDay));
+        return true;
+    }
+
+    private void putTrain(String trainNumber, int[] classTotals) {
+        Integer slot = slots.get(trainNumber);
+        boolean added = slot == null;
+        if (added) {
+            slot = freeSlots.isEmpty() ? allocateSlot() : freeSlots.pop();
+        }
+        int offset = offsetOf(slot);
+        byte[] name = new byte[MAX_TRAIN_NUMBER_LENGTH];
+        byte[] raw = trainNumber.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(raw, 0, name, 0, Math.min(raw.length, MAX_TRAIN_NUMBER_LENGTH));
+        buffer.put(offset, name);
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            COUNTER.setVolatile(buffer, totalAt(slot, c), classTotals[c]);
+        }
+        for (int d = 0; d < windowDays; d++) {
+            COUNTER.setVolatile(buffer, offset + DAYS_OFFSET + d * DAY_SIZE, 0);
+        }
+        COUNTER.setVolatile(buffer, offset + FLAGS_OFFSET, FLAG_LIVE);
+        if (added) {
+            // Publish the slot only once its record is complete
+            slots.put(trainNumber, slot);
+        }
+    }
+
+    private static void addCapped(MappedByteBuffer mapped, int position, int totalPosition, int seats) {
+        while (true) {
+            int total = (int) COUNTER.getVolatile(mapped, totalPosition);
+            int available = (int) COUNTER.getVolatile(mapped, position);
+            int released = Math.min(total, available + seats);
+            if (COUNTER.compareAndSet(mapped, position, available, released)) {
+                return;
+            }
+        }
+    }
+
+    private void open() {
+        try {
+            Path path = Paths.get(filename);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                initialize();
+                return;
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Unsupported inventory file format: " + filename);
+            }
+            if (header.getInt(4) != VERSION || header.getInt(8) != recordSize) {
+                convert(header.getInt(4), header.getInt(8));
+                return;
+            }
+            int storedCount = (int) ((channel.size() - HEADER_SIZE) / recordSize);
+            map(Math.max(INITIAL_CAPACITY, storedCount));
+            recordCount = buffer.getInt(12);
+            for (int slot = 0; slot < recordCount; slot++) {
+                int offset = offsetOf(slot);
+                if (buffer.getInt(offset + FLAGS_OFFSET) == FLAG_LIVE) {
+                    slots.put(readTrainNumber(buffer, offset), slot);
+                } else {
+                    freeSlots.push(slot);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error opening train inventory: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Start an empty inventory file
+     */
+    private void initialize() {
+        map(INITIAL_CAPACITY);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, recordSize);
+        buffer.putInt(12, 0);
+        recordCount = 0;
+    }
+
+    /**
+     * Rewrite a file of an older version or another window size in the current layout
+     * Only the trains and their class totals matter: the counters of every date
+     * are set from the seat maps once the file is open
+     */
+    private void convert(int oldVersion, int oldRecordSize) throws IOException {
+        MappedByteBuffer old = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        int count = old.getInt(12);
+        List<String> names = new ArrayList<>();
+        List<int[]> totals = new ArrayList<>();
+        for (int slot = 0; slot < count; slot++) {
+            int offset = HEADER_SIZE + slot * oldRecordSize;
+            if (oldVersion == 1) {
+                if (old.getInt(offset + V1_FLAGS_OFFSET) == FLAG_LIVE) {
+                    names.add(readTrainNumber(old, offset));
+                    totals.add(splitSeats(old.getInt(offset + V1_TOTAL_OFFSET)));
+                }
+            } else if (old.getInt(offset + FLAGS_OFFSET) == FLAG_LIVE) {
+                names.add(readTrainNumber(old, offset));
+                int[] classTotals = new int[CLASS_COUNT];
+                for (int c = 0; c < CLASS_COUNT; c++) {
+                    classTotals[c] = old.getInt(offset + CLASS_TOTAL_OFFSET + c * 4);
+                }
+                totals.add(classTotals);
+            }
+        }
+
+        channel.truncate(0);
+        initialize();
+        for (int i = 0; i < names.size(); i++) {
+            putTrain(names.get(i), totals.get(i));
+        }
+        buffer.force();
+        System.out.println("Train inventory converted to a " + windowDays + "-day booking window: " +
+                           names.size() + " trains.");
+    }
+
+    /**
+     * Build the inventory from trains.txt lines (trainNumber,...,totalSeats,...)
+     */
+    private void migrateFromCsv() {
+        CsvCursor fields = new CsvCursor("");
+        FileUtil.forEachRecord(FileUtil.TRAINS_FILE, line -> {
+            fields.reset(line);
+            if (fields.fieldCount() >= 7) {
+                try {
+                    String trainNumber = fields.nextString();
+                    fields.skip();
+                    fields.skip();
+                    fields.skip();
+                    putTrain(trainNumber, splitSeats(fields.nextInt()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping invalid train record: " + line);
+                }
+            }
+            return true;
+        });
+        if (!slots.isEmpty()) {
+            System.out.println("Train inventory migrated: " + slots.size() + " trains.");
+        }
+    }
+
+    /**
+     * Set the counters of every date in the booking window from the seat maps
+     * (seats free on the one segment of a direct train; a class and date without
+     * a map has all its seats free). Through-route counters of multi-stop trains
+     * are set by SegmentInventory from the same maps
+     * @param freeBySegment - seats free per segment, by SeatMap.keyOf
+     */
+    private void setFromSeatMaps(Map<String, int[]> freeBySegment) {
+        long today = LocalDate.now().toEpochDay();
+        for (Map.Entry<String, Integer> train : slots.entrySet()) {
+            int slot = train.getValue();
+            for (long epochDay = today; epochDay < today + windowDays; epochDay++) {
+                String journeyDate = LocalDate.ofEpochDay(epochDay).toString();
+                boolean opened = (int) COUNTER.getVolatile(buffer, dayAt(slot, epochDay)) == stampOf(epochDay);
+                for (int c = 0; c < CLASS_COUNT; c++) {
+                    int total = (int) COUNTER.getVolatile(buffer, totalAt(slot, c));
+                    int[] free = freeBySegment.get(SeatMap.keyOf(train.getKey(), Train.TICKET_CLASSES[c],
+                                                                 journeyDate));
+                    if (free == null && opened) {
+                        setAvailableSeats(train.getKey(), c, epochDay, total);
+                    } else if (free != null && free.length == 1) {
+                        setAvailableSeats(train.getKey(), c, epochDay, Math.max(0, Math.min(total, free[0])));
+                    }
+                }
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (recordCount == capacity) {
+            map(capacity * 2);
+        }
+        int slot = recordCount++;
+        buffer.putInt(12, recordCount);
+        return slot;
+    }
+
+    private void map(int newCapacity) {
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                 HEADER_SIZE + (long) newCapacity * recordSize);
+            capacity = newCapacity;
+        } catch (IOException e) {
+            throw new IllegalStateException("Error mapping train inventory: " + e.getMessage(), e);
+        }
+    }
+
+    private static String readTrainNumber(MappedByteBuffer mapped, int offset) {
+        byte[] name = new byte[MAX_TRAIN_NUMBER_LENGTH];
+        mapped.get(offset, name);
+        int length = 0;
+        while (length < MAX_TRAIN_NUMBER_LENGTH && name[length] != 0) {
+            length++;
+        }
+        return new String(name, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isClass(int classIndex) {
+        return classIndex >= 0 && classIndex < CLASS_COUNT;
+    }
+
+    private static int stampOf(long epochDay) {
+        return (int) (epochDay + 1);
+    }
+
+    private int offsetOf(int slot) {
+        return HEADER_SIZE + slot * recordSize;
+    }
+
+    private int totalAt(int slot, int classIndex) {
+        return offsetOf(slot) + CLASS_TOTAL_OFFSET + classIndex * 4;
+    }
+
+    private int dayAt(int slot, long epochDay) {
+        return offsetOf(slot) + DAYS_OFFSET + (int) Math.floorMod(epochDay, (long) windowDays) * DAY_SIZE;
+    }
+}
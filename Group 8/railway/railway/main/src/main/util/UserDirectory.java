@@ -0,0 +1,112 @@
+package util;
+
+import model.User;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory user directory keyed by normalized email and by userId
+ * Loaded once from users.txt; every change is written through to the file
+ * Demonstrates Singleton Design Pattern
+ */
+public class UserDirectory {
+
+    private static UserDirectory instance;
+
+    private final ConcurrentMap<String, User> usersByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, User> usersById = new ConcurrentHashMap<>();
+
+    private UserDirectory() {
+        FileUtil.forEachRecord(FileUtil.USERS_FILE, line -> {
+            User user = FactoryUserCreator.createUserFromFileData(line);
+            if (user != null) {
+                usersByEmail.putIfAbsent(normalizeEmail(user.getEmail()), user);
+                usersById.put(user.getUserId(), user);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Get the shared directory, loading users.txt on first use
+     */
+    public static synchronized UserDirectory getInstance() {
+        if (instance == null) {
+            instance = new UserDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * Emails are compared trimmed and case-insensitive
+     */
+    public static String normalizeEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find a user by email
+     * @return the user, or null if the email is not registered
+     */
+    public User findByEmail(String email) {
+        return usersByEmail.get(normalizeEmail(email));
+    }
+
+    /**
+     * Find a user by ID
+     * @return the user, or null if there is no such user
+     */
+    public User findById(String userId) {
+        return userId == null ? null : usersById.get(userId);
+    }
+
+    /**
+     * Check if an email is already registered
+     */
+    public boolean emailExists(String email) {
+        return usersByEmail.containsKey(normalizeEmail(email));
+    }
+
+    /**
+     * Add a new user and append it to users.txt
+     * The email is claimed atomically, so concurrent registrations cannot duplicate it
+     * If the write fails the claim is dropped again, so the user cannot log in and
+     * the email stays free
+     * @return false if the email is already registered
+     * @throws UncheckedIOException if users.txt could not be written
+     */
+    public boolean add(User user) {
+        String email = normalizeEmail(user.getEmail());
+        if (usersByEmail.putIfAbsent(email, user) != null) {
+            return false;
+        }
+        usersById.put(user.getUserId(), user);
+        try {
+            FileUtil.writeToFile(FileUtil.USERS_FILE, user.toFileFormat(), true);
+        } catch (UncheckedIOException e) {
+            usersById.remove(user.getUserId(), user);
+            usersByEmail.remove(email, user);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Write a changed user through to users.txt
+     */
+    public boolean update(User user) {
+        if (!usersById.containsKey(user.getUserId())) {
+            return false;
+        }
+        return FileUtil.updateInFile(FileUtil.USERS_FILE, user.getUserId(), user.toFileFormat());
+    }
+
+    /**
+     * Number of registered users
+     */
+    public int size() {
+        return usersById.size();
+    }
+}
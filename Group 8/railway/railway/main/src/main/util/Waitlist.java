@@ -0,0 +1,417 @@
+package util;
+
+import model.Train;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Waiting lines of tickets that found no free seats, per train, class and journey date
+ * The first places in a line are RAC (Reservation Against Cancellation), the rest WL
+ * Each ticket waits for the route segments between its stops, so a line only holds
+ * back new bookings that need one of the segments somebody is waiting for
+ * Waitlisted tickets are kept in bookings.txt with status "Waitlisted", so the lines
+ * are rebuilt from there on startup, in booking ID order
+ * Demonstrates Singleton Design Pattern
+ */
+public class Waitlist {
+
+    private static Waitlist instance;
+
+    private final int racPlaces;
+    private final Map<String, WaitingQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, WaitingQueue> queueOfBooking = new ConcurrentHashMap<>();
+
+    /**
+     * Tells whether the free seats can take a waiting ticket's request
+     */
+    public interface SeatCheck {
+        boolean fits(int fromStop, int toStop, int seats);
+    }
+
+    /**
+     * One waiting line, stored as an array of slots in joining order
+     * Tickets leaving from the middle leave an empty slot behind and are counted
+     * in a Fenwick tree, so a ticket's place in line is its slot minus the empty
+     * slots ahead of it: O(1) while nobody left mid-line, O(log n) otherwise.
+     * Taking the first ticket skips empty slots, and the array is compacted when
+     * half of it has been passed, so every change is O(log n) amortized
+     * Every segment counts the tickets waiting for it, so checking a stop range
+     * against the line takes O(stops), however long the line is
+     * Tickets are also grouped by what they ask for (stops and seats), each group
+     * ordered by slot; a train has few such groups, so finding the first ticket
+     * the free seats can take looks at the head of each group, not at the whole line
+     */
+    private static class WaitingQueue {
+        private String[] slots = new String[16];
+        private int[] leftTree = new int[17];
+        private final Map<String, Long> slotOf = new HashMap<>();
+        private final Map<String, int[]> requestOf = new HashMap<>();
+        private final Map<Long, TreeMap<Long, String>> byRequest = new HashMap<>();
+        private int[] waitingOn = new int[0];
+        private long base;   // sequence number of slots[0]
+        private long head;   // first ticket in line (or tail if the line is empty)
+        private long tail;   // sequence number for the next ticket
+        private int left;    // empty slots between head and tail
+
+        synchronized int add(String bookingId, int fromStop, int toStop, int seats) {
+            if (tail - base == slots.length) {
+                rebuild((int) (tail - head) * 2 + 16);
+            }
+            slots[(int) (tail - base)] = bookingId;
+            slotOf.put(bookingId, tail);
+            requestOf.put(bookingId, new int[] { fromStop, toStop, seats });
+            byRequest.computeIfAbsent(requestKey(fromStop, toStop, seats), key -> new TreeMap<>())
+                    .put(tail, bookingId);
+            cover(fromStop, toStop, 1);
+            tail++;
+            return size();
+        }
+
+        /**
+         * Booking IDs in line order
+         */
+        synchronized List<String> inLine() {
+            List<String> bookingIds = new ArrayList<>(size());
+            for (long slot = head; slot < tail; slot++) {
+                String bookingId = slots[(int) (slot - base)];
+                if (bookingId != null) {
+                    bookingIds.add(bookingId);
+                }
+            }
+            return bookingIds;
+        }
+
+        /**
+         * First ticket in line of every group of equal requests, in line order
+         */
+        synchronized List<String> firstOfEachRequest() {
+            List<Map.Entry<Long, String>> firsts = new ArrayList<>(byRequest.size());
+            for (TreeMap<Long, String> group : byRequest.values()) {
+                firsts.add(group.firstEntry());
+            }
+            firsts.sort((a, b) -> Long.compare(a.getKey(), b.getKey()));
+            List<String> bookingIds = new ArrayList<>(firsts.size());
+            for (Map.Entry<Long, String> first : firsts) {
+                bookingIds.add(first.getValue());
+            }
+            return bookingIds;
+        }
+
+        synchronized int[] requestOf(String bookingId) {
+            int[] request = requestOf.get(bookingId);
+            return request == null ? null : request.clone();
+        }
+
+        /**
+         * Check if any ticket waits for a segment between fromStop and toStop
+         */
+        synchronized boolean waitsOn(int fromStop, int toStop) {
+            for (int segment = Math.max(0, fromStop); segment < Math.min(toStop, waitingOn.length); segment++) {
+                if (waitingOn[segment] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized boolean remove(String bookingId) {
+            Long slot = slotOf.remove(bookingId);
+            if (slot == null) {
+                return false;
+            }
+            int[] request = requestOf.remove(bookingId);
+            long key = requestKey(request[0], request[1], request[2]);
+            TreeMap<Long, String> group = byRequest.get(key);
+            group.remove(slot);
+            if (group.isEmpty()) {
+                byRequest.remove(key);
+            }
+            cover(request[0], request[1], -1);
+            int index = (int) (slot - base);
+            slots[index] = null;
+            if (slot == head) {
+                head++;
+                while (head < tail && slots[(int) (head - base)] == null) {
+                    head++;
+                    left--;
+                }
+                if (head - base > slots.length / 2) {
+                    rebuild(slots.length);
+                }
+            } else {
+                for (int i = index + 1; i < leftTree.length; i += i & -i) {
+                    leftTree[i]++;
+                }
+                left++;
+            }
+            return true;
+        }
+
+        /**
+         * Place of a ticket in line (1 for the first), or 0 if it is not waiting
+         */
+        synchronized int positionOf(String bookingId) {
+            Long slot = slotOf.get(bookingId);
+            if (slot == null) {
+                return 0;
+            }
+            int ahead = (int) (slot - head);
+            if (left > 0) {
+                ahead -= leftBefore((int) (slot - base)) - leftBefore((int) (head - base));
+            }
+            return ahead + 1;
+        }
+
+        synchronized int size() {
+            return (int) (tail - head) - left;
+        }
+
+        private static long requestKey(int fromStop, int toStop, int seats) {
+            return ((long) fromStop << 42) | ((long) toStop << 21) | seats;
+        }
+
+        /**
+         * Count tickets waiting on segments fromStop..toStop-1
+         */
+        private void cover(int fromStop, int toStop, int delta) {
+            if (toStop > waitingOn.length) {
+                waitingOn = Arrays.copyOf(waitingOn, toStop);
+            }
+            for (int segment = Math.max(0, fromStop); segment < toStop; segment++) {
+                waitingOn[segment] += delta;
+            }
+        }
+
+        /**
+         * Empty slots before an array index
+         */
+        private int leftBefore(int index) {
+            int count = 0;
+            for (int i = index; i > 0; i -= i & -i) {
+                count += leftTree[i];
+            }
+            return count;
+        }
+
+        /**
+         * Move the line to the start of an array of the given size and rebuild the tree
+         */
+        private void rebuild(int capacity) {
+            String[] moved = new String[Math.max(capacity, 16)];
+            int length = (int) (tail - head);
+            System.arraycopy(slots, (int) (head - base), moved, 0, length);
+            int[] tree = new int[moved.length + 1];
+            for (int i = 1; i <= moved.length; i++) {
+                if (i <= length && moved[i - 1] == null) {
+                    tree[i]++;
+                }
+                int parent = i + (i & -i);
+                if (parent <= moved.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+            slots = moved;
+            leftTree = tree;
+            base = head;
+        }
+    }
+
+    private Waitlist(int racPlaces) {
+        this.racPlaces = racPlaces;
+        load();
+    }
+
+    /**
+     * Get the shared waitlist, rebuilding the lines from bookings.txt on first use
+     */
+    public static synchronized Waitlist getInstance() {
+        if (instance == null) {
+            instance = new Waitlist(SingletonConnection.getInstance().getRacPlacesPerClass());
+        }
+        return instance;
+    }
+
+    /**
+     * Put a ticket for seats from stop fromStop to stop toStop at the end of the
+     * line of its train, class and date
+     * @return its place in line
+     */
+    public int join(String trainNumber, String ticketClass, String journeyDate, String bookingId,
+                    int fromStop, int toStop, int seats) {
+        WaitingQueue queue = queues.computeIfAbsent(keyOf(trainNumber, ticketClass, journeyDate),
+                key -> new WaitingQueue());
+        queueOfBooking.put(bookingId, queue);
+        return queue.add(bookingId, fromStop, toStop, seats);
+    }
+
+    /**
+     * Booking IDs waiting for a class on a date, in line order (a copy)
+     */
+    public List<String> inLine(String trainNumber, String ticketClass, String journeyDate) {
+        WaitingQueue queue = queues.get(keyOf(trainNumber, ticketClass, journeyDate));
+        return queue == null ? new ArrayList<>() : queue.inLine();
+    }
+
+    /**
+     * First ticket in a class's line on a date whose request the free seats can take,
+     * or null if there is none
+     * Only the first ticket of each group of equal requests is checked, since the
+     * ones behind it ask for the same seats: O(kinds of request), not O(line length)
+     */
+    public String firstFitting(String trainNumber, String ticketClass, String journeyDate,
+                               SeatCheck check) {
+        WaitingQueue queue = queues.get(keyOf(trainNumber, ticketClass, journeyDate));
+        if (queue == null) {
+            return null;
+        }
+        for (String bookingId : queue.firstOfEachRequest()) {
+            int[] request = queue.requestOf(bookingId);
+            if (request != null && check.fits(request[0], request[1], request[2])) {
+                return bookingId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What a waiting ticket asked for, as { fromStop, toStop, seats }, or null if it is not waiting
+     */
+    public int[] requestOf(String bookingId) {
+        WaitingQueue queue = queueOfBooking.get(bookingId);
+        return queue == null ? null : queue.requestOf(bookingId);
+    }
+
+    /**
+     * Check if any ticket of a class on a date is waiting for a segment between
+     * fromStop and toStop (new bookings for those segments then join the line
+     * instead of taking freed seats; other parts of the route book as usual)
+     */
+    public boolean hasWaiting(String trainNumber, String ticketClass, String journeyDate,
+                              int fromStop, int toStop) {
+        WaitingQueue queue = queues.get(keyOf(trainNumber, ticketClass, journeyDate));
+        return queue != null && queue.waitsOn(fromStop, toStop);
+    }
+
+    /**
+     * Take a ticket out of its line (confirmed or cancelled)
+     */
+    public boolean remove(String bookingId) {
+        WaitingQueue queue = queueOfBooking.remove(bookingId);
+        return queue != null && queue.remove(bookingId);
+    }
+
+    /**
+     * Place of a ticket in its line (1 for the first), or 0 if it is not waiting
+     */
+    public int positionOf(String bookingId) {
+        WaitingQueue queue = queueOfBooking.get(bookingId);
+        return queue == null ? 0 : queue.positionOf(bookingId);
+    }
+
+    /**
+     * Number of tickets waiting for a class on a date
+     */
+    public int size(String trainNumber, String ticketClass, String journeyDate) {
+        WaitingQueue queue = queues.get(keyOf(trainNumber, ticketClass, journeyDate));
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Status shown for a place in line, e.g. "RAC 2" or "WL 14"
+     */
+    public String statusOf(int position) {
+        return position <= racPlaces ? "RAC " + position : "WL " + (position - racPlaces);
+    }
+
+    /**
+     * Rebuild the lines of dates still ahead from the waitlisted bookings
+     * (bookingId,userId,trainNumber,seats,class,fare,status,bookingDate,seatNumbers,
+     * journeyDate[,fromStation,toStation])
+     */
+    private void load() {
+        LocalDate today = LocalDate.now();
+        Map<String, Train> trains = new HashMap<>();
+        for (Train train : RouteIndex.getInstance().getTrains()) {
+            trains.put(train.getTrainNumber(), train);
+        }
+        Map<String, List<String>> waiting = new HashMap<>();
+        Map<String, int[]> requests = new HashMap<>();
+        CsvCursor fields = new CsvCursor("");
+        FileUtil.forEachRecord(FileUtil.BOOKINGS_FILE, line -> {
+            try {
+                fields.reset(line);
+                if (fields.fieldCount() < 10) {
+                    return true;
+                }
+                String bookingId = fields.nextString();
+                fields.skip();
+                String trainNumber = fields.nextString();
+                int seats = fields.nextInt();
+                String ticketClass = fields.nextString();
+                fields.skip();
+                if (!fields.nextEquals("Waitlisted")) {
+                    return true;
+                }
+                fields.skip();
+                fields.skip();
+                String journeyDate = fields.nextString();
+                if (!LocalDate.parse(journeyDate).isBefore(today)) {
+                    String fromStation = fields.hasNext() ? fields.nextString() : "";
+                    String toStation = fields.hasNext() ? fields.nextString() : "";
+                    int[] stops = stopsOf(trains.get(trainNumber), fromStation, toStation);
+                    waiting.computeIfAbsent(keyOf(trainNumber, ticketClass, journeyDate),
+                            key -> new ArrayList<>()).add(bookingId);
+                    requests.put(bookingId, new int[] { stops[0], stops[1], seats });
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error reading waitlisted booking: " + e.getMessage());
+            }
+            return true;
+        });
+        for (Map.Entry<String, List<String>> entry : waiting.entrySet()) {
+            List<String> bookingIds = entry.getValue();
+            bookingIds.sort((a, b) -> Long.compare(idNumber(a), idNumber(b)));
+            WaitingQueue queue = new WaitingQueue();
+            for (String bookingId : bookingIds) {
+                int[] request = requests.get(bookingId);
+                queue.add(bookingId, request[0], request[1], request[2]);
+                queueOfBooking.put(bookingId, queue);
+            }
+            queues.put(entry.getKey(), queue);
+        }
+    }
+
+    /**
+     * Stop indexes of a waiting ticket's stations (the whole route for older tickets,
+     * or if its stations are no longer on the route; none if the train is gone)
+     */
+    private static int[] stopsOf(Train train, String fromStation, String toStation) {
+        if (train == null) {
+            return new int[] { 0, 0 };
+        }
+        int fromStop = fromStation.trim().isEmpty() ? 0 : train.stopIndex(fromStation);
+        int toStop = toStation.trim().isEmpty() ? train.getSegmentCount() : train.stopIndex(toStation);
+        if (fromStop < 0 || toStop <= fromStop) {
+            return new int[] { 0, train.getSegmentCount() };
+        }
+        return new int[] { fromStop, toStop };
+    }
+
+    private static long idNumber(String bookingId) {
+        try {
+            return Long.parseLong(bookingId.substring(1));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static String keyOf(String trainNumber, String ticketClass, String journeyDate) {
+        return trainNumber + "/" + ticketClass.trim().toUpperCase() + "/" + journeyDate;
+    }
+}